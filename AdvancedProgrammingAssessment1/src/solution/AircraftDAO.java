@@ -1,25 +1,43 @@
 package solution;
 import java.io.BufferedReader;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import baseclasses.Aircraft;
 import baseclasses.Aircraft.Manufacturer;
+import baseclasses.CabinCrew;
 import baseclasses.DataLoadingException;
 import baseclasses.IAircraftDAO;
+import baseclasses.Pilot;
 
 
 /**
  * The AircraftDAO class is responsible for loading aircraft data from CSV files
  * and contains methods to help the system find aircraft when scheduling
  */
-public class AircraftDAO implements IAircraftDAO {
+public class AircraftDAO implements IAircraftDAO, DataVersioned {
+	private static final Logger LOG = Logger.getLogger(AircraftDAO.class.getName());
+	private static final Metrics.Timer FIND_AIRCRAFT_BY_SEATS = Metrics.timer("aircraft.findAircraftBySeats");
+	private static final Metrics.Timer FIND_BEST_FIT_AIRCRAFT = Metrics.timer("aircraft.findBestFitAircraft");
+	private static final Metrics.Timer FIND_AIRCRAFT_BY_STARTING_POSITION = Metrics.timer("aircraft.findAircraftByStartingPosition");
+	private static final Metrics.Timer FIND_AIRCRAFT_BY_TAIL_CODE = Metrics.timer("aircraft.findAircraftByTailCode");
+	private static final Metrics.Timer FIND_AIRCRAFT_BY_TAIL_CODE_BATCH = Metrics.timer("aircraft.findAircraftByTailCode[batch]");
+	private static final Metrics.Timer FIND_AIRCRAFT_BY_TYPE = Metrics.timer("aircraft.findAircraftByType");
+	private static final Metrics.Counter INDEXES_BUILT = Metrics.counter("aircraft.indexesBuilt");
+	
+	//everything loaded so far, replaced as a whole by each load or reset so readers never need a lock
+	private volatile Data data = new Data(0, new ArrayList<Aircraft>());
 	
-	ArrayList<Aircraft> aircraft;
 	public AircraftDAO () {
-		aircraft = new ArrayList<Aircraft>();
 	}
 	/**
 	 * Loads the aircraft data from the specified file, adding them to the currently loaded aircraft
@@ -31,76 +49,52 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public void loadAircraftData(Path p) throws DataLoadingException {	
+		long start = Metrics.start();
+		List<Aircraft> loaded = new ArrayList<Aircraft>();
 		try {
-			//open the file
-			BufferedReader reader = Files.newBufferedReader(p);
-			
-			//read the file line by line
-			String line = "";
-			
-			//skip the first line of the file - headers
-			reader.readLine();
-			
-			while( (line = reader.readLine()) != null) {
-				//each line has fields separated by commas, split into an array of fields
-				String[] fields = line.split(",");
-				//put some of the fields into variables: check which fields are where atop the CSV file itself
-				String tailcode = fields[0];
-				String typeCode = fields[1];
-				String Manufacturer = fields [2];
-				String model = fields [3];
-				int seats = Integer.parseInt(fields[4]);
-				int cabinCrewRequired = isNumeric(fields[5]);
-				String startingPosition = "";
-				if (fields.length>6) {
-				startingPosition = fields[6];
-				}
-				else {
-					throw new DataLoadingException();
-				}
-				Aircraft a = new Aircraft();
-				a.setTailCode(tailcode);
-				a.setTypeCode(typeCode);
-				a.setModel(model);
-				a.setSeats(seats);
-				a.setCabinCrewRequired(cabinCrewRequired);
-				a.setStartingPosition(startingPosition);
-				a.setManufacturer(getManufacturer(Manufacturer));
-				
-				
-				aircraft.add(a);
-				
-				//print a line explaining what we've found
-				System.out.println("Aircraft: " + tailcode + " is a " + typeCode + " with " + seats + " seats.");
-				
-			}
-
+			readAircraftFile(p, loaded);
 		}
 		
 		catch (Exception e) {
 			//There was a problem reading the file
 			throw new DataLoadingException(e);
 		}
+		finally {
+			//aircraft before a bad record are kept, as they always have been
+			addAll(loaded);
+			Metrics.recordLoad("aircraft", p, start, loaded.size());
+		}
 
 	}
 	
+	/**
+	 * A number that changes whenever aircraft are loaded or reset, so callers can tell if
+	 * anything they worked out from earlier results is still current
+	 */
+	@Override
+	public long getDataVersion() {
+		return data.version;
+	}
+	
 	/**
 	 * Returns a list of all the loaded Aircraft with at least the specified number of seats
 	 * @param seats the number of seats required
-	 * @return a List of all the loaded aircraft with at least this many seats
+	 * @return a List of all the loaded aircraft with at least this many seats, smallest first
 	 */
 	@Override
 	public List<Aircraft> findAircraftBySeats(int seats) {
-		List<Aircraft> aircraftBySeats = new ArrayList<Aircraft>();
-		for (Aircraft a:aircraft) 
-		{
-			int aircraftSeats = a.getSeats();
-			if (seats <= aircraftSeats)
+		long start = Metrics.start();
+		try {
+			List<Aircraft> bySeats = new ArrayList<Aircraft>();
+			for (List<Aircraft> sameSeats : data.indexes().aircraftBySeats.tailMap(seats, true).values())
 			{
-				aircraftBySeats.add(a);
+				bySeats.addAll(sameSeats);
 			}
+			return bySeats;
+		}
+		finally {
+			FIND_AIRCRAFT_BY_SEATS.record(start);
 		}
-		return aircraftBySeats;
 	}
 
 	/**
@@ -110,15 +104,60 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public List<Aircraft> findAircraftByStartingPosition(String startingPosition) {
-		List <Aircraft> aircraftByStartingPosition = new ArrayList<Aircraft>();
-		for(Aircraft a:aircraft)
-		{
-			if(startingPosition.equalsIgnoreCase(a.getStartingPosition()))
-			{
-				aircraftByStartingPosition.add(a);
+		long start = Metrics.start();
+		try {
+			return copyOf(data.indexes().byStartingPosition(startingPosition));
+		}
+		finally {
+			FIND_AIRCRAFT_BY_STARTING_POSITION.record(start);
+		}
+	}
+
+	/**
+	 * Returns the smallest aircraft starting at an airport with at least as many seats as there
+	 * are passengers, out of those of the allowed types
+	 * Answered by the seat search of the FeasibilityIndex the scheduler plans with, a binary
+	 * search and then one bit mask per type, and nothing is allocated, so this can be asked for
+	 * every flight of a schedule
+	 * @param startingPosition the three letter airport code, in any case
+	 * @param passengers the number of seats needed
+	 * @param typeCodes the allowed type codes, or null for any type
+	 * @return the aircraft, or null if none fits; of aircraft the same size, the one loaded first
+	 */
+	public Aircraft findBestFitAircraft(String startingPosition, int passengers, List<String> typeCodes) {
+		long start = Metrics.start();
+		try {
+			return data.indexes().seatIndex.bestFit(startingPosition, passengers, typeCodes);
+		}
+		finally {
+			FIND_BEST_FIT_AIRCRAFT.record(start);
+		}
+	}
+
+	/**
+	 * findBestFitAircraft() for many flights at once, such as all of a day's, all answered from
+	 * the same aircraft even if a load happens part way through
+	 * @param startingPositions the airport each flight leaves from
+	 * @param passengers the number of seats each flight needs
+	 * @param typeCodes the allowed type codes for every flight, or null for any type
+	 * @param bestFit filled in with the aircraft for each flight, or null where none fits
+	 * @throws IllegalArgumentException if the arrays are not all the same length
+	 */
+	public void findBestFitAircraft(String[] startingPositions, int[] passengers, List<String> typeCodes, Aircraft[] bestFit) {
+		if (passengers.length != startingPositions.length || bestFit.length != startingPositions.length) {
+			throw new IllegalArgumentException("Expected " + startingPositions.length + " passenger numbers and results but got "
+					+ passengers.length + " and " + bestFit.length);
+		}
+		long start = Metrics.start();
+		try {
+			FeasibilityIndex seatIndex = data.indexes().seatIndex;
+			for (int i = 0; i < startingPositions.length; i++) {
+				bestFit[i] = seatIndex.bestFit(startingPositions[i], passengers[i], typeCodes);
 			}
 		}
-		return aircraftByStartingPosition;
+		finally {
+			FIND_BEST_FIT_AIRCRAFT.record(start);
+		}
 	}
 
 	/**
@@ -128,37 +167,50 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public Aircraft findAircraftByTailCode(String tailCode) {
-		Aircraft aircraftByTailCode = new Aircraft();
-		for(Aircraft a:aircraft) 
-		{	
-			String  aircraftTailCode = a.getTailCode();
-			if(tailCode.equals(aircraftTailCode))
-			{
-				aircraftByTailCode=a;
-			}
-			
+		long start = Metrics.start();
+		try {
+			return data.indexes().aircraftByTailCode.get(tailCode);
+		}
+		finally {
+			FIND_AIRCRAFT_BY_TAIL_CODE.record(start);
 		}
-		return aircraftByTailCode;
 	}
-		/**
+
+	/**
+	 * findAircraftByTailCode() for many tail codes at once, all answered from the same loaded aircraft
+	 * @param aircraft filled in with the aircraft for each tail code, or null where there is none
+	 * @throws IllegalArgumentException if the arrays are not the same length
+	 */
+	public void findAircraftByTailCode(String[] tailCodes, Aircraft[] aircraft) {
+		if (aircraft.length != tailCodes.length) {
+			throw new IllegalArgumentException("Expected " + tailCodes.length + " results but got " + aircraft.length);
+		}
+		long start = Metrics.start();
+		try {
+			Map<String, Aircraft> byTailCode = data.indexes().aircraftByTailCode;
+			for (int i = 0; i < tailCodes.length; i++) {
+				aircraft[i] = byTailCode.get(tailCodes[i]);
+			}
+		}
+		finally {
+			FIND_AIRCRAFT_BY_TAIL_CODE_BATCH.record(start);
+		}
 	}
-		return null
+
+	/**
 	 * Returns a List of all the loaded Aircraft with the specified type code
 	 * @param typeCode the type code of the aircraft you wish to find
 	 * @return a List of all the loaded Aircraft with the specified type code
 	 */
 	@Override
 	public List<Aircraft> findAircraftByType(String typeCode) {
-		List<Aircraft> aircraftByTypeCode = new ArrayList<Aircraft>();
-		for(Aircraft a:aircraft)
-		{
-			String aircraftType = a.getTypeCode();
-			if(typeCode.equals(aircraftType))
-			{
-				aircraftByTypeCode.add(a);
-			}
+		long start = Metrics.start();
+		try {
+			return copyOf(data.indexes().byType(typeCode));
+		}
+		finally {
+			FIND_AIRCRAFT_BY_TYPE.record(start);
 		}
-		return aircraftByTypeCode;
 	}
 
 	/**
@@ -168,7 +220,7 @@ public class AircraftDAO implements IAircraftDAO {
 	@Override
 	public List<Aircraft> getAllAircraft() {
 
-		return aircraft;
+		return data.aircraft;
 	}
 
 	/**
@@ -177,18 +229,115 @@ public class AircraftDAO implements IAircraftDAO {
 	 */
 	@Override
 	public int getNumberOfAircraft() {
-			return aircraft.size();
+			return data.aircraft.size();
 	}
 
 	/**
 	 * Unloads all of the aircraft currently loaded, ready to start again if needed
 	 */
 	@Override
-	public void reset() {
-		aircraft.clear();;
+	public synchronized void reset() {
+		data = new Data(data.version + 1, new ArrayList<Aircraft>());
 
 	}
-	private Manufacturer getManufacturer(String manufacturer) {
+	/**
+	 * Parses a whole aircraft CSV file without loading it, also used by DataWatcher to diff a changed file
+	 * @param loaded the list to add each aircraft to, which keeps those before any bad record
+	 */
+	static void readAircraftFile(Path p, List<Aircraft> loaded) throws IOException {
+		try (BufferedReader reader = Files.newBufferedReader(p)) {
+			CsvTokenizer csv = new CsvTokenizer(reader);
+			
+			//skip the first line of the file - headers
+			csv.nextRecord();
+			
+			while (csv.nextRecord()) {
+				loaded.add(readAircraft(csv));
+			}
+		}
+	}
+	/**
+	 * Parses the current record of an aircraft CSV file, also used by DataLoader on chunks of large files
+	 * @throws CsvParseException if the record does not have all 7 fields or the seats are not a number
+	 */
+	static Aircraft readAircraft(CsvTokenizer csv) throws CsvParseException {
+		//check which fields are where atop the CSV file itself
+		if (csv.fieldCount() < 7 || csv.isEmpty(6)) {
+			throw new CsvParseException("Expected 7 fields but found " + csv.fieldCount(), csv.line(), 1);
+		}
+		Aircraft a = new Aircraft();
+		a.setTailCode(csv.field(0));
+		a.setTypeCode(CodeDictionary.canonical(csv.field(1)));
+		a.setManufacturer(getManufacturer(csv.field(2)));
+		a.setModel(csv.field(3));
+		a.setSeats(csv.intField(4));
+		int cabinCrewRequired;
+		try {
+			cabinCrewRequired = csv.intField(5);
+		}
+		catch (CsvParseException notANumber) {
+			cabinCrewRequired = 0;
+		}
+		a.setCabinCrewRequired(cabinCrewRequired);
+		a.setStartingPosition(CodeDictionary.canonical(csv.field(6)));
+		return a;
+	}
+	/**
+	 * Replaces every loaded aircraft in one step, used when restoring a snapshot
+	 */
+	synchronized void restore(List<Aircraft> restored) {
+		data = new Data(data.version + 1, new ArrayList<Aircraft>(restored));
+	}
+	/**
+	 * Makes the changes found in a reloaded file, publishing them as one new version
+	 * The new version is indexed from scratch, as after a load, not patched from the old one
+	 */
+	synchronized void apply(RecordDiff<Aircraft> diff) {
+		data = new Data(data.version + 1, diff.applyTo(data.aircraft));
+	}
+	/**
+	 * Adds aircraft as though they had been loaded, also used by DataLoader
+	 * A new version holding the old and new aircraft is published in one step, and is only
+	 * indexed when it is first queried, so loading many files in a row indexes them once
+	 */
+	synchronized void addAll(List<Aircraft> added) {
+		if (added.isEmpty()) {
+			return;
+		}
+		if (LOG.isLoggable(Level.FINE)) {
+			for (Aircraft a : added) {
+				LOG.fine("Aircraft: " + a.getTailCode() + " is a " + a.getTypeCode() + " with " + a.getSeats() + " seats.");
+			}
+		}
+		ArrayList<Aircraft> all = new ArrayList<Aircraft>(data.aircraft.size() + added.size());
+		all.addAll(data.aircraft);
+		all.addAll(added);
+		data = new Data(data.version + 1, all);
+	}
+	private static <K> void addTo(Map<K, List<Aircraft>> index, K key, Aircraft a) {
+		List<Aircraft> list = index.get(key);
+		if (list == null) {
+			list = new ArrayList<Aircraft>();
+			index.put(key, list);
+		}
+		list.add(a);
+	}
+	private static void addTo(CodeMap<List<Aircraft>> index, int id, Aircraft a) {
+		List<Aircraft> list = index.get(id);
+		if (list == null) {
+			list = new ArrayList<Aircraft>();
+			index.put(id, list);
+		}
+		list.add(a);
+	}
+
+	private static List<Aircraft> copyOf(List<Aircraft> indexed) {
+		if (indexed == null) {
+			return new ArrayList<Aircraft>();
+		}
+		return new ArrayList<Aircraft>(indexed);
+	}
+	private static Manufacturer getManufacturer(String manufacturer) {
 		switch (manufacturer) {
 		case "Boeing":return Manufacturer.BOEING;
 		case "Airbus":return Manufacturer.AIRBUS;
@@ -199,15 +348,68 @@ public class AircraftDAO implements IAircraftDAO {
 		default: return Manufacturer.BOEING;
 		}
 	}
-	private int isNumeric (String str) {
-		if (str == null) 
-			return 0;
-			try {
-				int number = Integer.parseInt(str);
-				return number;
+
+	/**
+	 * One version of the loaded aircraft, never changed once published
+	 * Its indexes are built by the first query to need them rather than by the load, as a
+	 * version that is replaced by the next file before anyone asks would be indexed for nothing
+	 */
+	private static class Data {
+		final long version;
+		final List<Aircraft> aircraft;
+		private volatile Indexes indexes;
+
+		Data(long version, ArrayList<Aircraft> aircraft) {
+			this.version = version;
+			this.aircraft = Collections.unmodifiableList(aircraft);
+		}
+
+		Indexes indexes() {
+			Indexes built = indexes;
+			if (built == null) {
+				synchronized (this) {
+					built = indexes;
+					if (built == null) {
+						built = new Indexes(aircraft);
+						indexes = built;
+						INDEXES_BUILT.increment();
+					}
+				}
 			}
-			catch (NumberFormatException ex) {
-				return 0;
+			return built;
+		}
+	}
+
+	/**
+	 * The lookup indexes of one version of the aircraft
+	 * Types are indexed by their ID in the version's own CodeDictionary and starting positions,
+	 * which are matched ignoring case, by their folded ID, and best fit queries go to a
+	 * FeasibilityIndex of the aircraft alone
+	 */
+	private static class Indexes {
+		final CodeDictionary codes = new CodeDictionary();
+		final HashMap<String, Aircraft> aircraftByTailCode = new HashMap<String, Aircraft>();
+		final CodeMap<List<Aircraft>> aircraftByType = new CodeMap<List<Aircraft>>();
+		final CodeMap<List<Aircraft>> aircraftByStartingPosition = new CodeMap<List<Aircraft>>();
+		final TreeMap<Integer, List<Aircraft>> aircraftBySeats = new TreeMap<Integer, List<Aircraft>>();
+		final FeasibilityIndex seatIndex;
+
+		Indexes(List<Aircraft> aircraft) {
+			for (Aircraft a : aircraft) {
+				aircraftByTailCode.put(a.getTailCode(), a);
+				addTo(aircraftByType, codes.id(a.getTypeCode()), a);
+				addTo(aircraftByStartingPosition, codes.folded(codes.id(a.getStartingPosition())), a);
+				addTo(aircraftBySeats, a.getSeats(), a);
 			}
+			seatIndex = new FeasibilityIndex(aircraft, Collections.<Pilot>emptyList(), Collections.<CabinCrew>emptyList());
+		}
+
+		List<Aircraft> byStartingPosition(String startingPosition) {
+			return aircraftByStartingPosition.get(codes.findIgnoreCase(startingPosition));
+		}
+
+		List<Aircraft> byType(String typeCode) {
+			return aircraftByType.get(codes.find(typeCode));
+		}
 	}
 }
@@ -0,0 +1,277 @@
+package solution;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.Pilot;
+
+/**
+ * Keeps the FeasibilityIndex and the candidate lists worked out from it for as long as the
+ * aircraft and crew they came from are unchanged, so a week of the same routes builds each
+ * list once instead of once per flight, and a schedule made from unchanged data builds none
+ *
+ * Aircraft candidates only depend on the departure airport and the smallest aircraft big
+ * enough, and crew candidates only on the airport and the candidate aircraft types, so those
+ * are the keys. A DAO implementing DataVersioned is trusted until its version moves, which
+ * every load, reload and reset does; any other DAO is read again for every schedule
+ *
+ * Entries are evicted least recently used first once their total size, counted in list
+ * elements, passes the limit. Cached lists are shared and read-only
+ */
+class CandidateCache {
+	/** The default limit on the number of list elements held */
+	static final int DEFAULT_MAX_WEIGHT = 2000000;
+	private static final Metrics.Timer BUILD_INDEX = Metrics.timer("scheduler.buildIndex");
+	private static final Metrics.Counter HITS = Metrics.counter("scheduler.candidateCache.hits");
+	private static final Metrics.Counter MISSES = Metrics.counter("scheduler.candidateCache.misses");
+	private static final Metrics.Counter EVICTIONS = Metrics.counter("scheduler.candidateCache.evictions");
+
+	private final Lru<Long, AircraftEntry> aircraft;
+	private final Lru<CrewKey, CrewEntry> crew;
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	//what the current index was built from, entries are only cached against that index
+	private volatile FeasibilityIndex index;
+	private IAircraftDAO aircraftDAO;
+	private ICrewDAO crewDAO;
+	private long aircraftVersion;
+	private long crewVersion;
+
+	CandidateCache(int maxWeight) {
+		if (maxWeight < 0) {
+			throw new IllegalArgumentException("maxWeight must not be negative");
+		}
+		//crew lists are several times longer than aircraft lists
+		aircraft = new Lru<Long, AircraftEntry>(maxWeight / 4);
+		crew = new Lru<CrewKey, CrewEntry>(maxWeight - maxWeight / 4);
+	}
+
+	/**
+	 * Returns the index for the DAOs, only building a new one if their data has changed since
+	 * the last call, in which case every cached list is dropped
+	 */
+	synchronized FeasibilityIndex index(IAircraftDAO aircraftDAO, ICrewDAO crewDAO) {
+		//versions are read before the data, so a load in between at worst causes one more rebuild
+		boolean versioned = aircraftDAO instanceof DataVersioned && crewDAO instanceof DataVersioned;
+		long aircraftVersion = versioned ? ((DataVersioned) aircraftDAO).getDataVersion() : 0;
+		long crewVersion = versioned ? ((DataVersioned) crewDAO).getDataVersion() : 0;
+		if (versioned && index != null && aircraftDAO == this.aircraftDAO && crewDAO == this.crewDAO
+				&& aircraftVersion == this.aircraftVersion && crewVersion == this.crewVersion) {
+			return index;
+		}
+		long start = Metrics.start();
+		FeasibilityIndex built = FeasibilityIndex.of(aircraftDAO, crewDAO);
+		BUILD_INDEX.record(start);
+		aircraft.clear();
+		crew.clear();
+		this.aircraftDAO = aircraftDAO;
+		this.crewDAO = crewDAO;
+		this.aircraftVersion = aircraftVersion;
+		this.crewVersion = crewVersion;
+		index = built;
+		return built;
+	}
+
+	/**
+	 * Drops the index and every cached list
+	 */
+	synchronized void clear() {
+		index = null;
+		aircraftDAO = null;
+		crewDAO = null;
+		aircraft.clear();
+		crew.clear();
+	}
+
+	/**
+	 * The candidates for a flight leaving an airport with a number of passengers, ranked as by
+	 * FeasibilityIndex.aircraftFor(), pilotsFor() and cabinCrewFor()
+	 * @param index the index from index(); lists from any older index are worked out but not cached
+	 */
+	Candidates candidatesFor(FeasibilityIndex index, String airport, int passengers) {
+		boolean current = index == this.index;
+		int airportId = index.airportId(airport);
+		//NONE is -1, so shift every airport ID up one to keep the key non-negative
+		Long aircraftKey = ((long) (airportId + 1) << 32) | index.seatClass(passengers);
+		AircraftEntry aircraftEntry = current ? lookUp(aircraft, aircraftKey) : null;
+		if (aircraftEntry == null) {
+			aircraftEntry = new AircraftEntry(index.aircraftFor(airport, passengers));
+			if (current) {
+				aircraft.put(aircraftKey, aircraftEntry);
+			}
+		}
+
+		CrewKey crewKey = new CrewKey(airportId, aircraftEntry.types);
+		CrewEntry crewEntry = current ? lookUp(crew, crewKey) : null;
+		if (crewEntry == null) {
+			crewEntry = new CrewEntry(index.pilotsFor(aircraftEntry.types, airport, true),
+					index.pilotsFor(aircraftEntry.types, airport, false), index.cabinCrewFor(aircraftEntry.types, airport));
+			if (current) {
+				crew.put(crewKey, crewEntry);
+			}
+		}
+		return new Candidates(aircraftEntry.aircraft, crewEntry.captains, crewEntry.firstOfficers, crewEntry.cabinCrew);
+	}
+
+	private <K, V extends Weighted> V lookUp(Lru<K, V> lru, K key) {
+		V value = lru.get(key);
+		if (value != null) {
+			hits.increment();
+			HITS.increment();
+		}
+		else {
+			misses.increment();
+			MISSES.increment();
+		}
+		return value;
+	}
+
+	long getHits() {
+		return hits.sum();
+	}
+
+	long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * The fraction of lookups answered from the cache, or 0 before the first lookup
+	 */
+	double getHitRate() {
+		long hit = hits.sum();
+		long total = hit + misses.sum();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+
+	/**
+	 * The ranked candidates for one flight, all read-only
+	 */
+	static class Candidates {
+		final FeasibilityIndex.Ranked<Aircraft> aircraft;
+		final FeasibilityIndex.Ranked<Pilot> captains;
+		final FeasibilityIndex.Ranked<Pilot> firstOfficers;
+		final FeasibilityIndex.Ranked<CabinCrew> cabinCrew;
+
+		Candidates(FeasibilityIndex.Ranked<Aircraft> aircraft, FeasibilityIndex.Ranked<Pilot> captains,
+				FeasibilityIndex.Ranked<Pilot> firstOfficers, FeasibilityIndex.Ranked<CabinCrew> cabinCrew) {
+			this.aircraft = aircraft;
+			this.captains = captains;
+			this.firstOfficers = firstOfficers;
+			this.cabinCrew = cabinCrew;
+		}
+	}
+
+	private interface Weighted {
+		int weight();
+	}
+
+	private static class AircraftEntry implements Weighted {
+		final FeasibilityIndex.Ranked<Aircraft> aircraft;
+		//the distinct types of the aircraft, in candidate order
+		final List<String> types;
+
+		AircraftEntry(FeasibilityIndex.Ranked<Aircraft> aircraft) {
+			Set<String> typeCodes = new LinkedHashSet<String>();
+			for (Aircraft a : aircraft) {
+				typeCodes.add(a.getTypeCode());
+			}
+			this.aircraft = aircraft;
+			this.types = Collections.unmodifiableList(new ArrayList<String>(typeCodes));
+		}
+
+		@Override
+		public int weight() {
+			return aircraft.size() + types.size();
+		}
+	}
+
+	private static class CrewEntry implements Weighted {
+		final FeasibilityIndex.Ranked<Pilot> captains;
+		final FeasibilityIndex.Ranked<Pilot> firstOfficers;
+		final FeasibilityIndex.Ranked<CabinCrew> cabinCrew;
+
+		CrewEntry(FeasibilityIndex.Ranked<Pilot> captains, FeasibilityIndex.Ranked<Pilot> firstOfficers,
+				FeasibilityIndex.Ranked<CabinCrew> cabinCrew) {
+			this.captains = captains;
+			this.firstOfficers = firstOfficers;
+			this.cabinCrew = cabinCrew;
+		}
+
+		@Override
+		public int weight() {
+			return captains.size() + firstOfficers.size() + cabinCrew.size();
+		}
+	}
+
+	private static class CrewKey {
+		final int airportId;
+		final List<String> types;
+
+		CrewKey(int airportId, List<String> types) {
+			this.airportId = airportId;
+			this.types = types;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof CrewKey)) {
+				return false;
+			}
+			CrewKey other = (CrewKey) o;
+			return airportId == other.airportId && types.equals(other.types);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * airportId + types.hashCode();
+		}
+	}
+
+	/**
+	 * An access ordered map holding at most maxWeight list elements, shared by the day planners
+	 * Two planners missing on the same key both work the lists out, and the second put wins
+	 */
+	private static class Lru<K, V extends Weighted> {
+		private final LinkedHashMap<K, V> entries = new LinkedHashMap<K, V>(256, 0.75f, true);
+		private final long maxWeight;
+		private long weight;
+
+		Lru(long maxWeight) {
+			this.maxWeight = maxWeight;
+		}
+
+		synchronized V get(K key) {
+			return entries.get(key);
+		}
+
+		synchronized void put(K key, V value) {
+			V replaced = entries.put(key, value);
+			if (replaced != null) {
+				weight -= replaced.weight();
+			}
+			weight += value.weight();
+			Iterator<Map.Entry<K, V>> eldest = entries.entrySet().iterator();
+			while (weight > maxWeight && eldest.hasNext()) {
+				weight -= eldest.next().getValue().weight();
+				eldest.remove();
+				EVICTIONS.increment();
+			}
+		}
+
+		synchronized void clear() {
+			entries.clear();
+			weight = 0;
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package solution;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps airport, type and day codes to a small int ID, so indexes can be arrays and every
+ * comparison is between ints
+ *
+ * Each spelling of a code gets its own ID, and also a folded ID: the ID of its upper case
+ * spelling. Indexes that match exactly are keyed by ID and those that ignore case by folded
+ * ID, so case is only dealt with once when a code is first seen and every later comparison
+ * is between ints
+ *
+ * Codes are only ever added while indexes are built; lookups never add and never take a lock
+ *
+ * Each DAO version and each FeasibilityIndex has its own dictionary, built and dropped with its
+ * indexes, so a dictionary only holds the codes of the data it indexes and reloading or resetting
+ * a DAO never leaves codes behind. It is bounded at MAX_SIZE; data with more distinct codes than
+ * that fails with an IllegalStateException, which the loaders report as a DataLoadingException
+ *
+ * The parsers share code Strings between records with canonical() instead, which uses the JVM's
+ * own string table, so a code no record holds any more is collected
+ */
+final class CodeDictionary {
+	/** Returned by the lookups for a code that has never been loaded */
+	static final int NONE = -1;
+
+	/** The most codes the dictionary holds, counting each spelling and its upper case separately */
+	static final int MAX_SIZE = 1 << 16;
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	//replaced as a whole when it grows, so a reader always sees the folded IDs and size together
+	private volatile Table table = new Table(new int[64], 0);
+
+	CodeDictionary() {
+	}
+
+	/**
+	 * Returns the one shared instance of a code, so the same code read from any file is held
+	 * once on the heap for as long as any record uses it
+	 */
+	static String canonical(String code) {
+		return code == null ? null : code.intern();
+	}
+
+	/**
+	 * Returns the ID of a code, adding it if it is new, or NONE for a null code
+	 */
+	int id(String code) {
+		if (code == null) {
+			return NONE;
+		}
+		Integer id = ids.get(code);
+		if (id != null) {
+			return id;
+		}
+		return add(code);
+	}
+
+	private synchronized int add(String code) {
+		Integer id = ids.get(code);
+		if (id != null) {
+			return id;
+		}
+		String upperCase = code.toUpperCase(Locale.ROOT);
+		int folded = upperCase.equals(code) ? table.size : id(upperCase);
+		Table current = table;
+		int next = current.size;
+		if (next == MAX_SIZE) {
+			throw new IllegalStateException("Too many distinct airport, type and day codes, at most " + MAX_SIZE
+					+ " can be loaded");
+		}
+		int[] foldedIds = current.folded;
+		if (next == foldedIds.length) {
+			foldedIds = Arrays.copyOf(foldedIds, next * 2);
+		}
+		foldedIds[next] = folded;
+		//publish the table before the ID, so anyone who finds the ID can read its entry
+		table = new Table(foldedIds, next + 1);
+		ids.put(code, next);
+		return next;
+	}
+
+	/**
+	 * Returns the ID of a code exactly as spelt, or NONE if it has never been loaded
+	 */
+	int find(String code) {
+		if (code == null) {
+			return NONE;
+		}
+		Integer id = ids.get(code);
+		return id == null ? NONE : id;
+	}
+
+	/**
+	 * Returns the folded ID of a code in any case, or NONE if it has never been loaded
+	 */
+	int findIgnoreCase(String code) {
+		int id = find(code);
+		if (id == NONE && code != null) {
+			//only a spelling no file has used needs converting here
+			id = find(code.toUpperCase(Locale.ROOT));
+		}
+		return id == NONE ? NONE : table.folded[id];
+	}
+
+	/**
+	 * Returns the folded ID of a loaded code's ID
+	 */
+	int folded(int id) {
+		return id == NONE ? NONE : table.folded[id];
+	}
+
+	/**
+	 * The number of IDs handed out so far, every ID is below this
+	 */
+	int size() {
+		return table.size;
+	}
+
+	private static class Table {
+		final int[] folded;
+		final int size;
+
+		Table(int[] folded, int size) {
+			this.folded = folded;
+			this.size = size;
+		}
+	}
+}
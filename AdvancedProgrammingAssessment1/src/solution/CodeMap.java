@@ -0,0 +1,35 @@
+package solution;
+import java.util.Arrays;
+
+/**
+ * A map from CodeDictionary IDs to values, held in an array indexed by ID
+ * Built by one thread and only read after that, like the DAO indexes that use it
+ * @param <V> the kind of value
+ */
+class CodeMap<V> {
+	private Object[] values = new Object[16];
+
+	/**
+	 * @return the value for an ID, or null if there is none or the ID is NONE
+	 */
+	@SuppressWarnings("unchecked")
+	V get(int id) {
+		if (id < 0 || id >= values.length) {
+			return null;
+		}
+		return (V) values[id];
+	}
+
+	/**
+	 * Sets the value for an ID; there is nowhere to hold a value for NONE, so it is dropped
+	 */
+	void put(int id, V value) {
+		if (id < 0) {
+			return;
+		}
+		if (id >= values.length) {
+			values = Arrays.copyOf(values, Math.max(values.length * 2, id + 1));
+		}
+		values[id] = value;
+	}
+}
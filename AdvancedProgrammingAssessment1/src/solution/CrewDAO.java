@@ -2,28 +2,32 @@ package solution;
 import java.io.BufferedReader;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import org.json.JSONArray;
-import org.json.JSONObject;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import baseclasses.CabinCrew;
 import baseclasses.Crew;
 import baseclasses.DataLoadingException;
 import baseclasses.ICrewDAO;
 import baseclasses.Pilot;
-import baseclasses.Pilot.Rank;
 
 /**
  * The CrewDAO is responsible for loading data from JSON-based crew files 
  * It contains various methods to help the scheduler find the right pilots and cabin crew
  */
-public class CrewDAO implements ICrewDAO {
-	private List <CabinCrew> cabincrewlist;
-	private List <Pilot> pilotlist;
+public class CrewDAO implements ICrewDAO, DataVersioned {
+	private static final Metrics.Timer FIND_CABIN_CREW_BY_HOME_BASE = Metrics.timer("crew.findCabinCrewByHomeBase");
+	private static final Metrics.Timer FIND_CABIN_CREW_BY_HOME_BASE_AND_TYPE_RATING = Metrics.timer("crew.findCabinCrewByHomeBaseAndTypeRating");
+	private static final Metrics.Timer FIND_CABIN_CREW_BY_HOME_BASE_AND_TYPE_RATING_BATCH = Metrics.timer("crew.findCabinCrewByHomeBaseAndTypeRating[batch]");
+	private static final Metrics.Timer FIND_CABIN_CREW_BY_TYPE_RATING = Metrics.timer("crew.findCabinCrewByTypeRating");
+	private static final Metrics.Timer FIND_PILOTS_BY_HOME_BASE = Metrics.timer("crew.findPilotsByHomeBase");
+	private static final Metrics.Timer FIND_PILOTS_BY_HOME_BASE_AND_TYPE_RATING = Metrics.timer("crew.findPilotsByHomeBaseAndTypeRating");
+	private static final Metrics.Timer FIND_PILOTS_BY_HOME_BASE_AND_TYPE_RATING_BATCH = Metrics.timer("crew.findPilotsByHomeBaseAndTypeRating[batch]");
+	private static final Metrics.Timer FIND_PILOTS_BY_TYPE_RATING = Metrics.timer("crew.findPilotsByTypeRating");
+	//everything loaded so far, replaced as a whole by each load or reset so readers never need a lock
+	private volatile Data data = new Data(0, new ArrayList<Pilot>(), new ArrayList<CabinCrew>());
 	
 	public CrewDAO() {
-		cabincrewlist = new ArrayList<CabinCrew>();
-		pilotlist = new ArrayList<Pilot>();
 	}
 	
 	
@@ -35,72 +39,66 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public void loadCrewData(Path p) throws DataLoadingException {
-	try	{
-		BufferedReader br = Files.newBufferedReader(p);
-		String line = "";
-		String jsonpilot = "";
-		String jsoncrew = "";
-		int pilotCounter = 0;
-		int crewCounter = 0;
-		while((line=br.readLine()) != null) {
-			if(pilotCounter>1)
-			{
-				if (pilotCounter==2) {
-					jsonpilot = jsonpilot +"[";
-				}
-				jsonpilot = jsonpilot + line;
-			}
-			pilotCounter++;
-			if (crewCounter>0) {
-				jsoncrew = jsoncrew + line;
-				}
-			if(line.contains("cabincrew")) {
-				jsoncrew = "[";
-				crewCounter++;
-			}
-		}
-		jsoncrew = jsoncrew.substring(0, jsoncrew.length()-1);
-		JSONArray jsonpilotroot = new JSONArray (jsonpilot);
-		JSONArray jsoncrewroot = new JSONArray (jsoncrew);
-		for(int i=0; i<jsonpilotroot.length(); i++) {
-			JSONObject pilots = jsonpilotroot.getJSONObject(i);
-			JSONArray json = pilots.getJSONArray("typeRatings");
-			Pilot pilot = new Pilot();
-			for (int j=0; j<json.length(); j++)
-			{
-				pilot.setQualifiedFor(json.getString(j));
-			}
-			
-			pilot.setForename(pilots.getString("forename"));
-			pilot.setSurname(pilots.getString("surname"));
-			pilot.setHomeBase(pilots.getString("homebase"));
-			
-			switch (pilots.getString("rank")) {
-				case "CAPTAIN":pilot.setRank(Rank.CAPTAIN);break;
-				case "FIRST_OFFICER":pilot.setRank(Rank.FIRST_OFFICER);break;
-				default:pilot.setRank(Rank.FIRST_OFFICER);break;
-			}
-			pilotlist.add(pilot);
+		long start = Metrics.start();
+		List<Pilot> pilots = new ArrayList<Pilot>();
+		List<CabinCrew> cabinCrew = new ArrayList<CabinCrew>();
+		try (BufferedReader br = Files.newBufferedReader(p)) {
+			new CrewJsonReader(br).read(pilots::add, cabinCrew::add);
 		}
-		
-		for (int i=0; i<jsoncrewroot.length(); i++){
-			JSONObject crews = jsoncrewroot.getJSONObject(i);
-			JSONArray json = crews.getJSONArray("typeRatings");
-			CabinCrew crew = new CabinCrew();
-			for (int j=0; j<json.length(); j++)
-			{
-				crew.setQualifiedFor(json.getString(j));
-			}
-			crew.setForename(crews.getString("forename"));
-			crew.setSurname(crews.getString("surname"));
-			crew.setHomeBase(crews.getString("homebase"));
-			cabincrewlist.add(crew);
-			}
-		
-		
-		}catch(Exception e) {
+		catch (Exception e) {
 			throw new DataLoadingException(e);
 		}
+		finally {
+			//crew read before any error are kept, as they always have been
+			addAll(pilots, cabinCrew);
+			Metrics.recordLoad("crew", p, start, pilots.size() + cabinCrew.size());
+		}
+	}
+
+	/**
+	 * Adds crew as though they had been loaded
+	 * A new version holding the old and new crew is built and then published in one step
+	 */
+	synchronized void addAll(List<Pilot> pilots, List<CabinCrew> cabinCrew) {
+		if (pilots.isEmpty() && cabinCrew.isEmpty()) {
+			return;
+		}
+		ArrayList<Pilot> allPilots = new ArrayList<Pilot>(data.pilots);
+		allPilots.addAll(pilots);
+		ArrayList<CabinCrew> allCabinCrew = new ArrayList<CabinCrew>(data.cabinCrew);
+		allCabinCrew.addAll(cabinCrew);
+		data = new Data(data.version + 1, allPilots, allCabinCrew);
+	}
+
+	/**
+	 * Makes the changes found in a reloaded file, publishing them as one new version
+	 * The new version is indexed from scratch, as after a load, not patched from the old one
+	 */
+	synchronized void apply(RecordDiff<Pilot> pilots, RecordDiff<CabinCrew> cabinCrew) {
+		data = new Data(data.version + 1, pilots.applyTo(data.pilots), cabinCrew.applyTo(data.cabinCrew));
+	}
+
+	/**
+	 * Replaces all of the loaded crew in one step, used when restoring a snapshot
+	 */
+	synchronized void restore(List<Pilot> pilots, List<CabinCrew> cabinCrew) {
+		data = new Data(data.version + 1, new ArrayList<Pilot>(pilots), new ArrayList<CabinCrew>(cabinCrew));
+	}
+
+	/**
+	 * The current version, so pilots and cabin crew can be read from the same load
+	 */
+	Data current() {
+		return data;
+	}
+
+	/**
+	 * A number that changes whenever crew are loaded or reset, so callers can tell if
+	 * anything they worked out from earlier results is still current
+	 */
+	@Override
+	public long getDataVersion() {
+		return data.version;
 	}
 	
 	
@@ -111,15 +109,13 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> findCabinCrewByHomeBase(String airportCode) {
-		List<CabinCrew> crewByHomeBase = new ArrayList<CabinCrew>();
-		for (CabinCrew c:cabincrewlist)
-		{
-			if (airportCode.equalsIgnoreCase(c.getHomeBase()))
-			{
-				crewByHomeBase.add(c);
-			}
+		long start = Metrics.start();
+		try {
+			return data.cabinCrewIndex.findByHomeBase(airportCode);
+		}
+		finally {
+			FIND_CABIN_CREW_BY_HOME_BASE.record(start);
 		}
-		return crewByHomeBase;
 	}
 
 	/**
@@ -130,34 +126,60 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> findCabinCrewByHomeBaseAndTypeRating(String typeCode, String airportCode) {
-		List<CabinCrew> crewByHomeBaseAndTypeRating = new ArrayList<CabinCrew>();
-		for (CabinCrew c:cabincrewlist)
-		{
-			if (airportCode.equals(c.getHomeBase()) && c.getTypeRatings().contains(typeCode))
-			{
-				crewByHomeBaseAndTypeRating.add(c);
-				
-			}
+		long start = Metrics.start();
+		try {
+			return data.cabinCrewIndex.findByHomeBaseAndType(typeCode, airportCode);
+		}
+		finally {
+			FIND_CABIN_CREW_BY_HOME_BASE_AND_TYPE_RATING.record(start);
+		}
+	}
+
+	/**
+	 * findCabinCrewByHomeBaseAndTypeRating() for many (type, home base) pairs at once, in the same
+	 * way as the batch findPilotsByHomeBaseAndTypeRating()
+	 * @param typeCodes the type rating of each pair
+	 * @param airportCodes the home base of each pair, spelt exactly as loaded
+	 * @param into the buffer to add each pair's cabin crew to, in pair order
+	 * @param ends filled in with the size of the buffer once each pair's cabin crew have been added
+	 * @throws IllegalArgumentException if the arrays are not all the same length
+	 */
+	public void findCabinCrewByHomeBaseAndTypeRating(String[] typeCodes, String[] airportCodes,
+			List<? super CabinCrew> into, int[] ends) {
+		long start = Metrics.start();
+		try {
+			findByHomeBaseAndType(data.cabinCrewIndex, typeCodes, airportCodes, into, ends);
+		}
+		finally {
+			FIND_CABIN_CREW_BY_HOME_BASE_AND_TYPE_RATING_BATCH.record(start);
+		}
+	}
+
+	private static <T extends Crew> void findByHomeBaseAndType(CrewIndex<T> index, String[] typeCodes,
+			String[] airportCodes, List<? super T> into, int[] ends) {
+		if (airportCodes.length != typeCodes.length || ends.length != typeCodes.length) {
+			throw new IllegalArgumentException("Expected " + typeCodes.length + " home bases and ends but got "
+					+ airportCodes.length + " and " + ends.length);
+		}
+		for (int i = 0; i < typeCodes.length; i++) {
+			into.addAll(index.findByHomeBaseAndType(typeCodes[i], airportCodes[i]));
+			ends[i] = into.size();
 		}
-		return crewByHomeBaseAndTypeRating;
 	}
 	/**
 	 * Returns a list of all the cabin crew currently loaded who are qualified to fly the specified type of plane
 	 * @param typeCode the type of plane to find cabin crew for
 	 * @return a list of all the cabin crew currently loaded who are qualified to fly the specified type of plane
 	 */
-	@SuppressWarnings("unlikely-arg-type")
 	@Override
 	public List<CabinCrew> findCabinCrewByTypeRating(String typeCode) {
-		List<CabinCrew> crewByTypeRating = new ArrayList<CabinCrew>();
-		for (CabinCrew c:cabincrewlist)
-		{
-			if (typeCode.equals(c.getTypeRatings()));
-			{
-				crewByTypeRating.add(c);
-			}
+		long start = Metrics.start();
+		try {
+			return data.cabinCrewIndex.findByType(typeCode);
+		}
+		finally {
+			FIND_CABIN_CREW_BY_TYPE_RATING.record(start);
 		}
-		return crewByTypeRating;
 	}
 
 	/**
@@ -167,15 +189,13 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> findPilotsByHomeBase(String airportCode) {
-		List<Pilot> pilotByHomeBase = new ArrayList<Pilot>();
-		for (Pilot p:pilotlist)
-		{
-			if (airportCode.equals(p.getHomeBase()))
-			{
-				pilotByHomeBase.add(p);
-			}
+		long start = Metrics.start();
+		try {
+			return data.pilotIndex.findByHomeBase(airportCode);
+		}
+		finally {
+			FIND_PILOTS_BY_HOME_BASE.record(start);
 		}
-		return pilotByHomeBase;
 	}
 
 	/**
@@ -186,16 +206,34 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> findPilotsByHomeBaseAndTypeRating(String typeCode, String airportCode) {
-		List<Pilot> pilotByHomeBaseAndTypeRating = new ArrayList<Pilot>();
-		for (Pilot p:pilotlist)
-		{
-			if (airportCode.equals(p.getHomeBase()) && p.getTypeRatings().contains(typeCode))
-			{
-				pilotByHomeBaseAndTypeRating.add(p);
-				
-			}
+		long start = Metrics.start();
+		try {
+			return data.pilotIndex.findByHomeBaseAndType(typeCode, airportCode);
+		}
+		finally {
+			FIND_PILOTS_BY_HOME_BASE_AND_TYPE_RATING.record(start);
+		}
+	}
+
+	/**
+	 * findPilotsByHomeBaseAndTypeRating() for many (type, home base) pairs at once, all answered
+	 * from the same loaded crew
+	 * The pilots for every pair are added to one buffer, which the caller can clear and reuse
+	 * @param typeCodes the type rating of each pair
+	 * @param airportCodes the home base of each pair, spelt exactly as loaded
+	 * @param into the buffer to add each pair's pilots to, in pair order
+	 * @param ends filled in with the size of the buffer once each pair's pilots have been added
+	 * @throws IllegalArgumentException if the arrays are not all the same length
+	 */
+	public void findPilotsByHomeBaseAndTypeRating(String[] typeCodes, String[] airportCodes, List<? super Pilot> into,
+			int[] ends) {
+		long start = Metrics.start();
+		try {
+			findByHomeBaseAndType(data.pilotIndex, typeCodes, airportCodes, into, ends);
+		}
+		finally {
+			FIND_PILOTS_BY_HOME_BASE_AND_TYPE_RATING_BATCH.record(start);
 		}
-		return pilotByHomeBaseAndTypeRating;
 	}
 
 	/**
@@ -205,16 +243,13 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> findPilotsByTypeRating(String typeCode) {
-		List<Pilot> pilotByTypeRating = new ArrayList<Pilot>();
-		for (Pilot p:pilotlist)
-		{
-			if (p.getTypeRatings().contains(typeCode))
-			{
-				
-				pilotByTypeRating.add(p);
-			}
+		long start = Metrics.start();
+		try {
+			return data.pilotIndex.findByType(typeCode);
+		}
+		finally {
+			FIND_PILOTS_BY_TYPE_RATING.record(start);
 		}
-		return pilotByTypeRating;
 	}
 
 	/**
@@ -223,7 +258,7 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<CabinCrew> getAllCabinCrew() {
-		return cabincrewlist;
+		return data.cabinCrew;
 	}
 
 	/**
@@ -232,11 +267,12 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Crew> getAllCrew() {
+		Data data = this.data;
 		List<Crew> allCrew = new ArrayList<Crew>();
-		for(CabinCrew c:cabincrewlist) {
+		for(CabinCrew c:data.cabinCrew) {
 			allCrew.add(c);
 		}
-		for(Pilot p:pilotlist)
+		for(Pilot p:data.pilots)
 		{
 			allCrew.add(p);
 		}
@@ -249,12 +285,12 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public List<Pilot> getAllPilots() {
-		return pilotlist;
+		return data.pilots;
 	}
 
 	@Override
 	public int getNumberOfCabinCrew() {
-		return cabincrewlist.size();
+		return data.cabinCrew.size();
 	}
 
 	/**
@@ -263,17 +299,40 @@ public class CrewDAO implements ICrewDAO {
 	 */
 	@Override
 	public int getNumberOfPilots() {
-		return pilotlist.size();
+		return data.pilots.size();
 	}
 
 	/**
 	 * Unloads all of the crew currently loaded, ready to start again if needed
 	 */
 	@Override
-	public void reset() {
-		cabincrewlist.clear();
-		pilotlist.clear();
+	public synchronized void reset() {
+		data = new Data(data.version + 1, new ArrayList<Pilot>(), new ArrayList<CabinCrew>());
+
+	}
 
+	/**
+	 * One version of the loaded crew and their indexes, never changed once built
+	 */
+	static class Data {
+		final long version;
+		final List<Pilot> pilots;
+		final List<CabinCrew> cabinCrew;
+		final CodeDictionary codes = new CodeDictionary();
+		final CrewIndex<Pilot> pilotIndex = new CrewIndex<Pilot>(codes, false);
+		final CrewIndex<CabinCrew> cabinCrewIndex = new CrewIndex<CabinCrew>(codes, true);
+
+		Data(long version, ArrayList<Pilot> pilots, ArrayList<CabinCrew> cabinCrew) {
+			this.version = version;
+			this.pilots = Collections.unmodifiableList(pilots);
+			this.cabinCrew = Collections.unmodifiableList(cabinCrew);
+			for (Pilot pilot : pilots) {
+				pilotIndex.add(pilot);
+			}
+			for (CabinCrew crew : cabinCrew) {
+				cabinCrewIndex.add(crew);
+			}
+		}
 	}
 
 }
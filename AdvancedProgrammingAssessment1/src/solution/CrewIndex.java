@@ -0,0 +1,97 @@
+package solution;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import baseclasses.Crew;
+
+/**
+ * Indexes crew by home base, by type rating and by the (home base, type rating) pair
+ * Each key holds a read-only view that is handed straight back to callers, so a lookup
+ * is one or two array reads by CodeDictionary ID and never builds a new list
+ * An index is filled once when its CrewDAO version is built and only read after that
+ * @param <T> the kind of crew being indexed
+ */
+class CrewIndex<T extends Crew> {
+	private final CodeDictionary codes;
+	//whether findByHomeBase() ignores case, as findCabinCrewByHomeBase() always has and
+	//findPilotsByHomeBase() never has; the (home base, type rating) pair is always exact
+	private final boolean homeBaseIgnoresCase;
+	private final CodeMap<CodeMap<Bucket<T>>> byHomeBaseAndType = new CodeMap<CodeMap<Bucket<T>>>();
+	private final CodeMap<Bucket<T>> byHomeBase = new CodeMap<Bucket<T>>();
+	private final CodeMap<Bucket<T>> byType = new CodeMap<Bucket<T>>();
+
+	/**
+	 * @param codes the dictionary of the CrewDAO version the index belongs to
+	 * @param homeBaseIgnoresCase true to index home bases by folded ID for findByHomeBase()
+	 */
+	CrewIndex(CodeDictionary codes, boolean homeBaseIgnoresCase) {
+		this.codes = codes;
+		this.homeBaseIgnoresCase = homeBaseIgnoresCase;
+	}
+
+	/**
+	 * Adds a crew member under their home base and each of their type ratings
+	 */
+	void add(T crew) {
+		int homeBase = codes.id(crew.getHomeBase());
+		bucket(byHomeBase, homeBaseIgnoresCase ? codes.folded(homeBase) : homeBase).add(crew);
+		CodeMap<Bucket<T>> types = byHomeBaseAndType.get(homeBase);
+		if (types == null) {
+			types = new CodeMap<Bucket<T>>();
+			byHomeBaseAndType.put(homeBase, types);
+		}
+		for (String typeCode : crew.getTypeRatings()) {
+			int type = codes.id(typeCode);
+			bucket(byType, type).add(crew);
+			bucket(types, type).add(crew);
+		}
+	}
+
+	List<T> findByHomeBase(String airportCode) {
+		return view(byHomeBase.get(homeBaseIgnoresCase ? codes.findIgnoreCase(airportCode) : codes.find(airportCode)));
+	}
+
+	List<T> findByType(String typeCode) {
+		return view(byType.get(codes.find(typeCode)));
+	}
+
+	List<T> findByHomeBaseAndType(String typeCode, String airportCode) {
+		CodeMap<Bucket<T>> types = byHomeBaseAndType.get(codes.find(airportCode));
+		if (types == null) {
+			return Collections.emptyList();
+		}
+		return view(types.get(codes.find(typeCode)));
+	}
+
+	private static <T> Bucket<T> bucket(CodeMap<Bucket<T>> index, int id) {
+		Bucket<T> bucket = index.get(id);
+		if (bucket == null) {
+			bucket = new Bucket<T>();
+			index.put(id, bucket);
+		}
+		return bucket;
+	}
+
+	private static <T> List<T> view(Bucket<T> bucket) {
+		if (bucket == null) {
+			return Collections.emptyList();
+		}
+		return bucket.view;
+	}
+
+	/**
+	 * The crew under one key, with its read-only view created once up front
+	 */
+	private static class Bucket<T> {
+		final ArrayList<T> items = new ArrayList<T>();
+		final List<T> view = Collections.unmodifiableList(items);
+
+		void add(T crew) {
+			//a crew member listing the same type rating twice is only indexed once
+			if (items.isEmpty() || items.get(items.size() - 1) != crew) {
+				items.add(crew);
+			}
+		}
+	}
+}
@@ -0,0 +1,290 @@
+package solution;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.Pilot;
+import baseclasses.Pilot.Rank;
+
+/**
+ * Reads a crew JSON file in a single forward pass, handing each Pilot and CabinCrew
+ * to the caller as soon as its object has been read
+ * Only the current token is ever held in memory, so large files are read in linear time
+ * and constant space, and the "pilots" and "cabincrew" arrays may appear in any order
+ */
+class CrewJsonReader {
+	private static final String[] KEYS = {"forename", "surname", "homebase", "typeRatings", "rank"};
+	private static final int FORENAME = 1;
+	private static final int SURNAME = 1 << 1;
+	private static final int HOME_BASE = 1 << 2;
+	private static final int TYPE_RATINGS = 1 << 3;
+	private static final int RANK = 1 << 4;
+	private static final int REQUIRED = FORENAME | SURNAME | HOME_BASE | TYPE_RATINGS;
+
+	private final Reader in;
+	private final char[] buffer = new char[8192];
+	private final StringBuilder token = new StringBuilder();
+	private int pos;
+	private int limit;
+	private int line = 1;
+	private int column;
+
+	CrewJsonReader(Reader in) {
+		this.in = in;
+	}
+
+	/**
+	 * Reads the whole file
+	 * @param pilots receives each pilot in file order
+	 * @param cabinCrew receives each cabin crew member in file order
+	 * @throws IOException if the file cannot be read, is not valid crew JSON, leaves out a crew member's
+	 * required fields or has anything after the top-level object
+	 */
+	void read(Consumer<Pilot> pilots, Consumer<CabinCrew> cabinCrew) throws IOException {
+		expect('{');
+		if (peek() != '}') {
+			do {
+				String key = readString();
+				expect(':');
+				if (key.equals("pilots")) {
+					readCrewArray(true, pilots, cabinCrew);
+				}
+				else if (key.equals("cabincrew")) {
+					readCrewArray(false, pilots, cabinCrew);
+				}
+				else {
+					skipValue();
+				}
+			} while (nextIs(','));
+		}
+		expect('}');
+		if (peek() >= 0) {
+			throw error("Unexpected content after the crew object");
+		}
+	}
+
+	private void readCrewArray(boolean isPilot, Consumer<Pilot> pilots, Consumer<CabinCrew> cabinCrew) throws IOException {
+		expect('[');
+		if (peek() == ']') {
+			next();
+			return;
+		}
+		do {
+			if (isPilot) {
+				Pilot pilot = new Pilot();
+				readCrewObject(pilot);
+				pilots.accept(pilot);
+			}
+			else {
+				CabinCrew crew = new CabinCrew();
+				readCrewObject(crew);
+				cabinCrew.accept(crew);
+			}
+		} while (nextIs(','));
+		expect(']');
+	}
+
+	/**
+	 * Reads one crew member, who must have a forename, surname, home base and type ratings,
+	 * and also a rank if they are a pilot
+	 */
+	private void readCrewObject(Crew crew) throws IOException {
+		int seen = 0;
+		expect('{');
+		if (peek() != '}') {
+			do {
+				String key = readString();
+				expect(':');
+				switch (key) {
+				case "forename": crew.setForename(readString()); seen |= FORENAME; break;
+				case "surname": crew.setSurname(readString()); seen |= SURNAME; break;
+				case "homebase": crew.setHomeBase(CodeDictionary.canonical(readString())); seen |= HOME_BASE; break;
+				case "rank":
+					String rank = readString();
+					if (crew instanceof Pilot) {
+						((Pilot) crew).setRank(rank(rank));
+						seen |= RANK;
+					}
+					break;
+				case "typeRatings":
+					expect('[');
+					seen |= TYPE_RATINGS;
+					if (peek() == ']') {
+						next();
+						break;
+					}
+					do {
+						crew.setQualifiedFor(CodeDictionary.canonical(readString()));
+					} while (nextIs(','));
+					expect(']');
+					break;
+				default: skipValue();
+				}
+			} while (nextIs(','));
+		}
+		expect('}');
+		int required = crew instanceof Pilot ? REQUIRED | RANK : REQUIRED;
+		if ((seen & required) != required) {
+			throw error("Crew member is missing " + missing(required & ~seen));
+		}
+	}
+
+	private Rank rank(String rank) throws IOException {
+		switch (rank) {
+		case "CAPTAIN": return Rank.CAPTAIN;
+		case "FIRST_OFFICER": return Rank.FIRST_OFFICER;
+		default: throw error("Invalid rank \"" + rank + "\"");
+		}
+	}
+
+	private static String missing(int keys) {
+		StringBuilder names = new StringBuilder();
+		for (int i = 0; i < KEYS.length; i++) {
+			if ((keys & (1 << i)) != 0) {
+				names.append(names.length() == 0 ? "" : ", ").append('"').append(KEYS[i]).append('"');
+			}
+		}
+		return names.toString();
+	}
+
+	private String readString() throws IOException {
+		expect('"');
+		token.setLength(0);
+		while (true) {
+			int c = read();
+			if (c == '"') {
+				return token.toString();
+			}
+			if (c == '\\') {
+				c = read();
+				switch (c) {
+				case 'n': c = '\n'; break;
+				case 't': c = '\t'; break;
+				case 'r': c = '\r'; break;
+				case 'b': c = '\b'; break;
+				case 'f': c = '\f'; break;
+				case 'u':
+					int code = 0;
+					for (int i = 0; i < 4; i++) {
+						int digit = Character.digit(read(), 16);
+						if (digit < 0) {
+							throw error("Invalid unicode escape");
+						}
+						code = (code << 4) | digit;
+					}
+					c = code;
+					break;
+				default: break;
+				}
+			}
+			token.append((char) c);
+		}
+	}
+
+	/**
+	 * Skips over any JSON value that the crew model does not use
+	 */
+	private void skipValue() throws IOException {
+		int c = peek();
+		if (c == '"') {
+			readString();
+		}
+		else if (c == '{' || c == '[') {
+			int close = c == '{' ? '}' : ']';
+			next();
+			if (peek() == close) {
+				next();
+				return;
+			}
+			do {
+				if (close == '}') {
+					readString();
+					expect(':');
+				}
+				skipValue();
+			} while (nextIs(','));
+			expect(close);
+		}
+		else {
+			//numbers, true, false and null
+			while (true) {
+				c = peekRaw();
+				if (c < 0 || c == ',' || c == '}' || c == ']' || Character.isWhitespace(c)) {
+					return;
+				}
+				read();
+			}
+		}
+	}
+
+	private boolean nextIs(char c) throws IOException {
+		if (peek() == c) {
+			next();
+			return true;
+		}
+		return false;
+	}
+
+	private void expect(int c) throws IOException {
+		int found = peek();
+		if (found != c) {
+			throw error("Expected '" + (char) c + "' but found " + (found < 0 ? "end of file" : "'" + (char) found + "'"));
+		}
+		next();
+	}
+
+	private void next() throws IOException {
+		read();
+	}
+
+	/**
+	 * Returns the next non-whitespace character without consuming it, or -1 at the end of the file
+	 */
+	private int peek() throws IOException {
+		while (true) {
+			int c = peekRaw();
+			if (c < 0 || !Character.isWhitespace(c)) {
+				return c;
+			}
+			read();
+		}
+	}
+
+	private int peekRaw() throws IOException {
+		if (pos == limit && !fill()) {
+			return -1;
+		}
+		return buffer[pos];
+	}
+
+	private int read() throws IOException {
+		if (pos == limit && !fill()) {
+			throw error("Unexpected end of file");
+		}
+		char c = buffer[pos++];
+		if (c == '\n') {
+			line++;
+			column = 0;
+		}
+		else {
+			column++;
+		}
+		return c;
+	}
+
+	private boolean fill() throws IOException {
+		int n = in.read(buffer, 0, buffer.length);
+		if (n <= 0) {
+			return false;
+		}
+		pos = 0;
+		limit = n;
+		return true;
+	}
+
+	private IOException error(String message) {
+		return new IOException(message + " at line " + line + ", column " + column);
+	}
+}
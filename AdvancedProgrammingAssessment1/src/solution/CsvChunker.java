@@ -0,0 +1,92 @@
+package solution;
+import java.nio.ByteBuffer;
+
+/**
+ * Finds record boundaries in UTF-8 CSV bytes so a large file can be parsed in separate chunks
+ * Quotes are tracked with the same rules as CsvTokenizer, so a line break inside a quoted
+ * field never ends a chunk; the scan only looks at bytes, which is far cheaper than parsing
+ * Lines end with \n, \r\n or a \r on its own, as they do for CsvTokenizer
+ */
+class CsvChunker {
+	private static final int FIELD_START = 0;
+	private static final int UNQUOTED = 1;
+	private static final int QUOTED = 2;
+	private static final int QUOTE_IN_QUOTED = 3;
+
+	private final ByteBuffer bytes;
+	private int position;
+	private int state = FIELD_START;
+	private int lines;
+
+	CsvChunker(ByteBuffer bytes) {
+		this.bytes = bytes;
+	}
+
+	boolean hasNext() {
+		return position < bytes.limit();
+	}
+
+	/**
+	 * The offset at which the next chunk starts
+	 */
+	int position() {
+		return position;
+	}
+
+	/**
+	 * The line number at which the next chunk starts, counting from 1
+	 */
+	int line() {
+		return lines + 1;
+	}
+
+	/**
+	 * Moves on by at least targetBytes, and then to the end of the record being scanned
+	 * @return the offset just past the end of the chunk
+	 */
+	int next(int targetBytes) {
+		int limit = bytes.limit();
+		int target = (int) Math.min((long) position + targetBytes, limit);
+		int i = position;
+		while (i < limit) {
+			byte b = bytes.get(i++);
+			if (b == '"') {
+				if (state == FIELD_START || state == QUOTE_IN_QUOTED) {
+					state = QUOTED;
+				}
+				else if (state == QUOTED) {
+					state = QUOTE_IN_QUOTED;
+				}
+				//a quote in the middle of an unquoted field is just text
+			}
+			else if (state == QUOTED) {
+				if (b == '\n' || isLoneCarriageReturn(b, i)) {
+					lines++;
+				}
+			}
+			else if (b == ',' || (b == '\r' && !isLoneCarriageReturn(b, i))) {
+				state = FIELD_START;
+			}
+			else if (b == '\n' || b == '\r') {
+				state = FIELD_START;
+				lines++;
+				if (i >= target) {
+					break;
+				}
+			}
+			else {
+				state = UNQUOTED;
+			}
+		}
+		position = i;
+		return i;
+	}
+
+	/**
+	 * True for a \r that is not followed by \n, which ends a line on its own
+	 * @param next the offset just past the byte
+	 */
+	private boolean isLoneCarriageReturn(byte b, int next) {
+		return b == '\r' && (next >= bytes.limit() || bytes.get(next) != '\n');
+	}
+}
@@ -0,0 +1,39 @@
+package solution;
+import java.io.IOException;
+
+/**
+ * Thrown when a line of a CSV file cannot be read, recording where the problem is
+ * Loaders pass it on as the cause of a DataLoadingException
+ */
+public class CsvParseException extends IOException {
+	private static final long serialVersionUID = 1L;
+	private final int line;
+	private final int column;
+
+	/**
+	 * @param message what is wrong
+	 * @param line the line of the file, counting from 1
+	 * @param column the column within the line, counting from 1
+	 */
+	public CsvParseException(String message, int line, int column) {
+		super(message + " at line " + line + ", column " + column);
+		this.line = line;
+		this.column = column;
+	}
+
+	/**
+	 * Returns the line of the file the problem is on, counting from 1
+	 * @return the line of the file the problem is on
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	/**
+	 * Returns the column within the line the problem starts at, counting from 1
+	 * @return the column within the line the problem starts at
+	 */
+	public int getColumn() {
+		return column;
+	}
+}
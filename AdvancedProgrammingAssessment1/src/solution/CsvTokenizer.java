@@ -0,0 +1,220 @@
+package solution;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Splits CSV input into records and fields without regular expressions
+ * Characters are read through one reusable buffer and each record's fields are copied into
+ * one reusable array, so Strings are only created for the fields a caller asks for
+ * Fields may be quoted, in which case they can contain commas, line breaks and "" for a quote
+ */
+class CsvTokenizer {
+	private final Reader in;
+	private final char[] buffer = new char[8192];
+	private int pos;
+	private int limit;
+	private boolean eof;
+
+	private char[] data = new char[256];
+	private int dataLength;
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private int[] columns = new int[16];
+	private int fieldCount;
+
+	private int line;
+	private int nextLine;
+	private int column;
+
+	CsvTokenizer(Reader in) {
+		this(in, 1);
+	}
+
+	/**
+	 * @param firstLine the line number of the first line of input, for input that is part of a larger file
+	 */
+	CsvTokenizer(Reader in, int firstLine) {
+		this.in = in;
+		this.nextLine = firstLine;
+	}
+
+	/**
+	 * Reads the next record, skipping blank lines
+	 * @return false at the end of the input
+	 * @throws CsvParseException if a quoted field is never closed or has text after its closing quote
+	 */
+	boolean nextRecord() throws IOException {
+		while (true) {
+			int c = peek();
+			if (c < 0) {
+				return false;
+			}
+			if (c == '\n' || c == '\r') {
+				read();
+				continue;
+			}
+			break;
+		}
+		line = nextLine;
+		dataLength = 0;
+		fieldCount = 0;
+		while (true) {
+			addField();
+			int c = peek();
+			if (c == '"') {
+				read();
+				readQuoted();
+				c = peek();
+				if (c >= 0 && c != ',' && c != '\n' && c != '\r') {
+					throw new CsvParseException("Unexpected text after closing quote", nextLine, column + 1);
+				}
+			}
+			else {
+				while ((c = peek()) >= 0 && c != ',' && c != '\n' && c != '\r') {
+					append((char) read());
+				}
+			}
+			ends[fieldCount - 1] = dataLength;
+			if (c == ',') {
+				read();
+				continue;
+			}
+			//end of the line or the input
+			if (c == '\r') {
+				read();
+				if (peek() == '\n') {
+					read();
+				}
+			}
+			else if (c == '\n') {
+				read();
+			}
+			return true;
+		}
+	}
+
+	int fieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * The line on which the current record starts, counting from 1
+	 */
+	int line() {
+		return line;
+	}
+
+	/**
+	 * The column at which a field of the current record starts, counting from 1
+	 */
+	int column(int field) {
+		return columns[field];
+	}
+
+	String field(int field) {
+		return new String(data, starts[field], ends[field] - starts[field]);
+	}
+
+	boolean isEmpty(int field) {
+		return starts[field] == ends[field];
+	}
+
+	/**
+	 * Parses a field as a decimal int without creating a String
+	 * @throws CsvParseException if the field is not a whole number
+	 */
+	int intField(int field) throws CsvParseException {
+		int start = starts[field];
+		int end = ends[field];
+		boolean negative = start < end && data[start] == '-';
+		if (negative) {
+			start++;
+		}
+		if (start == end || end - start > 9) {
+			throw notANumber(field);
+		}
+		int value = 0;
+		for (int i = start; i < end; i++) {
+			int digit = data[i] - '0';
+			if (digit < 0 || digit > 9) {
+				throw notANumber(field);
+			}
+			value = value * 10 + digit;
+		}
+		return negative ? -value : value;
+	}
+
+	private CsvParseException notANumber(int field) {
+		return new CsvParseException("\"" + field(field) + "\" is not a whole number", line, columns[field]);
+	}
+
+	private void readQuoted() throws IOException {
+		int startLine = nextLine;
+		int startColumn = column;
+		while (true) {
+			int c = peek();
+			if (c < 0) {
+				throw new CsvParseException("Quoted field is never closed", startLine, startColumn);
+			}
+			read();
+			if (c == '"') {
+				if (peek() != '"') {
+					return;
+				}
+				read();
+			}
+			append((char) c);
+		}
+	}
+
+	private void addField() {
+		if (fieldCount == starts.length) {
+			starts = Arrays.copyOf(starts, fieldCount * 2);
+			ends = Arrays.copyOf(ends, fieldCount * 2);
+			columns = Arrays.copyOf(columns, fieldCount * 2);
+		}
+		starts[fieldCount] = dataLength;
+		columns[fieldCount] = column + 1;
+		fieldCount++;
+	}
+
+	private void append(char c) {
+		if (dataLength == data.length) {
+			data = Arrays.copyOf(data, dataLength * 2);
+		}
+		data[dataLength++] = c;
+	}
+
+	private int peek() throws IOException {
+		if (pos == limit) {
+			if (eof) {
+				return -1;
+			}
+			int n = in.read(buffer, 0, buffer.length);
+			if (n <= 0) {
+				eof = true;
+				return -1;
+			}
+			pos = 0;
+			limit = n;
+		}
+		return buffer[pos];
+	}
+
+	/**
+	 * Reads one character, counting \n, \r\n and a \r on its own as a line break
+	 */
+	private int read() throws IOException {
+		int c = peek();
+		pos++;
+		if (c == '\n' || (c == '\r' && peek() != '\n')) {
+			nextLine++;
+			column = 0;
+		}
+		else {
+			column++;
+		}
+		return c;
+	}
+}
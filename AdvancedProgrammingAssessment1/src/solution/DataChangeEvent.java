@@ -0,0 +1,98 @@
+package solution;
+import java.nio.file.Path;
+import java.time.DayOfWeek;
+import java.util.EnumSet;
+import java.util.List;
+
+import baseclasses.Route;
+
+/**
+ * The aircraft, pilots, cabin crew or routes added, updated and removed when a watched file changed
+ * @param <T> the kind of record that changed
+ */
+public class DataChangeEvent<T> {
+	/**
+	 * The kind of record an event is about
+	 */
+	public enum Kind {
+		AIRCRAFT, PILOTS, CABIN_CREW, ROUTES
+	}
+
+	private final Kind kind;
+	private final Path file;
+	private final RecordDiff<T> diff;
+	private final long dataVersion;
+
+	DataChangeEvent(Kind kind, Path file, RecordDiff<T> diff, long dataVersion) {
+		this.kind = kind;
+		this.file = file;
+		this.diff = diff;
+		this.dataVersion = dataVersion;
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * The watched file that changed
+	 */
+	public Path getFile() {
+		return file;
+	}
+
+	public List<T> getAdded() {
+		return diff.getAdded();
+	}
+
+	/**
+	 * The new versions of records that changed, which replaced the old ones in the DAO
+	 */
+	public List<T> getUpdated() {
+		return diff.getUpdated();
+	}
+
+	/**
+	 * The records that are no longer loaded
+	 */
+	public List<T> getRemoved() {
+		return diff.getRemoved();
+	}
+
+	/**
+	 * The DAO's data version once the change was published
+	 */
+	public long getDataVersion() {
+		return dataVersion;
+	}
+
+	/**
+	 * The days of the week whose schedule may need planning again
+	 * For routes these are the days of the changed routes, any aircraft or crew change can affect every day
+	 */
+	public EnumSet<DayOfWeek> getAffectedDays() {
+		if (kind != Kind.ROUTES) {
+			return EnumSet.allOf(DayOfWeek.class);
+		}
+		EnumSet<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+		addDays(days, getAdded());
+		addDays(days, getUpdated());
+		addDays(days, getRemoved());
+		return days;
+	}
+
+	private static void addDays(EnumSet<DayOfWeek> days, List<?> routes) {
+		for (Object route : routes) {
+			DayOfWeek day = RouteDAO.parseDayOfWeek(((Route) route).getDayOfWeek());
+			if (day != null) {
+				days.add(day);
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return kind + " in " + file + ": " + getAdded().size() + " added, " + getUpdated().size() + " updated, "
+				+ getRemoved().size() + " removed";
+	}
+}
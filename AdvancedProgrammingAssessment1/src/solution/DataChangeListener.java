@@ -0,0 +1,11 @@
+package solution;
+
+/**
+ * Told by a DataWatcher about each change it makes to the loaded data
+ */
+public interface DataChangeListener {
+	/**
+	 * Called on the watcher's thread after the change has been published to the DAO
+	 */
+	void dataChanged(DataChangeEvent<?> event);
+}
@@ -0,0 +1,263 @@
+package solution;
+import java.io.CharArrayReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+
+import baseclasses.Aircraft;
+import baseclasses.DataLoadingException;
+
+/**
+ * Loads the aircraft, crew, route and passenger number files into their DAOs concurrently
+ *
+ * Each DAO's files are loaded one after another on a thread of their own, in the order they
+ * were added, so loading stays cumulative exactly as with repeated calls to the DAO itself
+ * and no DAO is ever touched by two threads at once
+ * Aircraft CSV files larger than two chunks are also split at record boundaries and the
+ * chunks parsed in parallel; at most two chunks per thread are in flight at a time, and they
+ * are merged in file order, stopping at the first bad record as a single load would
+ *
+ * A file that fails to load does not stop the others, every failure is reported together
+ * once everything has finished
+ */
+public class DataLoader {
+	/** Aircraft files are parsed in chunks of about this many bytes */
+	static final int CHUNK_BYTES = 1 << 20;
+
+	private final AircraftDAO aircraft;
+	private final CrewDAO crew;
+	private final RouteDAO routes;
+	private final PassengerNumbersDAO passengerNumbers;
+	private final List<Path> aircraftFiles = new ArrayList<Path>();
+	private final List<Path> crewFiles = new ArrayList<Path>();
+	private final List<Path> routeFiles = new ArrayList<Path>();
+	private final List<Path> passengerNumbersFiles = new ArrayList<Path>();
+	private int parallelism = Runtime.getRuntime().availableProcessors();
+
+	public DataLoader(AircraftDAO aircraft, CrewDAO crew, RouteDAO routes, PassengerNumbersDAO passengerNumbers) {
+		this.aircraft = aircraft;
+		this.crew = crew;
+		this.routes = routes;
+		this.passengerNumbers = passengerNumbers;
+	}
+
+	public void addAircraftFile(Path p) {
+		aircraftFiles.add(p);
+	}
+
+	public void addCrewFile(Path p) {
+		crewFiles.add(p);
+	}
+
+	public void addRouteFile(Path p) {
+		routeFiles.add(p);
+	}
+
+	public void addPassengerNumbersFile(Path p) {
+		passengerNumbersFiles.add(p);
+	}
+
+	/**
+	 * @param parallelism the number of loader threads, by default one per processor
+	 */
+	public void setParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Loads every added file into its DAO, adding to whatever the DAOs already hold
+	 * @throws DataLoadingException if any file failed to load; this is the first failure, in the
+	 * order aircraft, crew, routes, passenger numbers, with any others attached as suppressed
+	 */
+	public void load() throws DataLoadingException {
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			List<Future<List<DataLoadingException>>> chains = new ArrayList<Future<List<DataLoadingException>>>();
+			chains.add(pool.submit(new Chain(aircraftFiles) {
+				@Override
+				void load(Path p) throws DataLoadingException {
+					loadAircraft(p);
+				}
+			}));
+			chains.add(pool.submit(new Chain(crewFiles) {
+				@Override
+				void load(Path p) throws DataLoadingException {
+					crew.loadCrewData(p);
+				}
+			}));
+			chains.add(pool.submit(new Chain(routeFiles) {
+				@Override
+				void load(Path p) throws DataLoadingException {
+					routes.loadRouteData(p);
+				}
+			}));
+			chains.add(pool.submit(new Chain(passengerNumbersFiles) {
+				@Override
+				void load(Path p) throws DataLoadingException {
+					passengerNumbers.loadPassengerNumbersData(p);
+				}
+			}));
+
+			DataLoadingException failure = null;
+			for (Future<List<DataLoadingException>> chain : chains) {
+				List<DataLoadingException> errors;
+				try {
+					errors = chain.get();
+				}
+				catch (Exception e) {
+					errors = new ArrayList<DataLoadingException>();
+					errors.add(new DataLoadingException(e));
+				}
+				for (DataLoadingException e : errors) {
+					if (failure == null) {
+						failure = e;
+					}
+					else {
+						failure.addSuppressed(e);
+					}
+				}
+			}
+			if (failure != null) {
+				throw failure;
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/**
+	 * Loads an aircraft file, in parallel chunks if it is big enough to be worth it
+	 */
+	private void loadAircraft(Path p) throws DataLoadingException {
+		try (FileChannel channel = FileChannel.open(p, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (parallelism == 1 || size < 2L * CHUNK_BYTES || size > Integer.MAX_VALUE) {
+				aircraft.loadAircraftData(p);
+				return;
+			}
+			long loadStart = Metrics.start();
+			ByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			CsvChunker chunker = new CsvChunker(bytes);
+			ArrayDeque<ForkJoinTask<ChunkResult>> inFlight = new ArrayDeque<ForkJoinTask<ChunkResult>>();
+			List<Aircraft> loaded = new ArrayList<Aircraft>();
+			try {
+				boolean header = true;
+				while (chunker.hasNext() || !inFlight.isEmpty()) {
+					if (chunker.hasNext() && inFlight.size() < parallelism * 2) {
+						int line = chunker.line();
+						int start = chunker.position();
+						int end = chunker.next(CHUNK_BYTES);
+						ByteBuffer chunk = bytes.duplicate();
+						chunk.limit(end).position(start);
+						inFlight.add(ForkJoinTask.adapt(new ChunkParser(chunk.slice(), line, header)).fork());
+						header = false;
+						continue;
+					}
+					ChunkResult result = inFlight.poll().join();
+					loaded.addAll(result.aircraft);
+					if (result.error != null) {
+						throw new DataLoadingException(result.error);
+					}
+				}
+			}
+			finally {
+				for (ForkJoinTask<ChunkResult> task : inFlight) {
+					task.cancel(false);
+				}
+				//the whole file is published as one new version, up to any bad record
+				aircraft.addAll(loaded);
+				Metrics.recordLoad("aircraft", p, loadStart, loaded.size());
+			}
+		}
+		catch (DataLoadingException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new DataLoadingException(e);
+		}
+	}
+
+	/**
+	 * Loads a list of files into one DAO in order, collecting rather than throwing failures
+	 */
+	private abstract static class Chain implements Callable<List<DataLoadingException>> {
+		private final List<Path> files;
+
+		Chain(List<Path> files) {
+			this.files = new ArrayList<Path>(files);
+		}
+
+		abstract void load(Path p) throws DataLoadingException;
+
+		@Override
+		public List<DataLoadingException> call() {
+			List<DataLoadingException> errors = new ArrayList<DataLoadingException>();
+			for (Path p : files) {
+				try {
+					load(p);
+				}
+				catch (DataLoadingException e) {
+					errors.add(e);
+				}
+				catch (RuntimeException e) {
+					errors.add(new DataLoadingException(e));
+				}
+			}
+			return errors;
+		}
+	}
+
+	/**
+	 * Parses one chunk of an aircraft file, keeping the aircraft before any bad record
+	 */
+	private static class ChunkParser implements Callable<ChunkResult> {
+		private final ByteBuffer bytes;
+		private final int firstLine;
+		private final boolean header;
+
+		ChunkParser(ByteBuffer bytes, int firstLine, boolean header) {
+			this.bytes = bytes;
+			this.firstLine = firstLine;
+			this.header = header;
+		}
+
+		@Override
+		public ChunkResult call() {
+			ChunkResult result = new ChunkResult();
+			try {
+				CharBuffer chars = StandardCharsets.UTF_8.newDecoder().decode(bytes);
+				CsvTokenizer csv = new CsvTokenizer(new CharArrayReader(chars.array(),
+						chars.arrayOffset() + chars.position(), chars.remaining()), firstLine);
+				if (header) {
+					csv.nextRecord();
+				}
+				while (csv.nextRecord()) {
+					result.aircraft.add(AircraftDAO.readAircraft(csv));
+				}
+			}
+			catch (Exception e) {
+				result.error = e;
+			}
+			return result;
+		}
+	}
+
+	private static class ChunkResult {
+		final List<Aircraft> aircraft = new ArrayList<Aircraft>();
+		Exception error;
+	}
+}
@@ -0,0 +1,403 @@
+package solution;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import baseclasses.Aircraft;
+import baseclasses.Aircraft.Manufacturer;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.Pilot;
+import baseclasses.Route;
+
+/**
+ * Saves everything loaded into the four DAOs to a single binary file, so a restart can restore
+ * them without parsing the CSV, JSON, XML and SQLite sources again
+ *
+ * The file is a fixed header (magic, format version, payload length, CRC32 of the payload)
+ * followed by the payload: the size and CRC32 of every source file, a table of
+ * every distinct string, the aircraft, pilots, cabin crew and routes as records of string ids,
+ * and finally the passenger forecast hash table in its off-heap layout
+ * Restoring maps the file read-only and uses the forecast table straight from the mapping, so
+ * the largest data set is neither copied nor re-hashed, and processes restoring the same file
+ * share its pages; the smaller DAOs rebuild their indexes from the restored records
+ *
+ * A snapshot is only restored when every source file still has the recorded size and contents,
+ * otherwise the caller should load the sources as normal and save again
+ * Modification times are not trusted, as copies and coarse clocks can keep them across an edit
+ */
+public class DataSnapshot {
+	private static final Logger LOG = Logger.getLogger(DataSnapshot.class.getName());
+	private static final int MAGIC = 0x46534E50; //"FSNP"
+	/** Bump whenever the payload layout changes, older snapshots are then ignored */
+	static final int FORMAT_VERSION = 2;
+	//magic, version, payload length, payload CRC32
+	private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+	private static final int NONE = -1;
+
+	private DataSnapshot() {
+	}
+
+	/**
+	 * Writes the current contents of the DAOs to a snapshot file, replacing any previous one
+	 * The file is written alongside and then moved into place, so a reader never sees half of it
+	 * @param snapshot the snapshot file to write
+	 * @param sources the files the DAOs were loaded from, checked again on restore
+	 * @throws IOException if the snapshot or a source file cannot be read or written
+	 */
+	public static void save(Path snapshot, List<Path> sources, AircraftDAO aircraft, CrewDAO crew, RouteDAO routes,
+			PassengerNumbersDAO passengerNumbers) throws IOException {
+		Path dir = snapshot.toAbsolutePath().getParent();
+		Path tmp = Files.createTempFile(dir, snapshot.getFileName().toString(), ".tmp");
+		try {
+			CRC32 crc = new CRC32();
+			long length;
+			try (OutputStream file = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+				file.write(new byte[HEADER_BYTES]);
+				DataOutputStream out = new DataOutputStream(new CheckedOutputStream(file, crc));
+				writePayload(out, sources, aircraft, crew, routes, passengerNumbers.getStore());
+				out.flush();
+				length = out.size();
+			}
+			if (length < 0 || length > Integer.MAX_VALUE - HEADER_BYTES) {
+				throw new IOException("Snapshot is too large to map: " + length + " bytes");
+			}
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putInt(MAGIC).putInt(FORMAT_VERSION).putLong(length).putLong(crc.getValue()).flip();
+			try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+				while (header.hasRemaining()) {
+					channel.write(header, header.position());
+				}
+			}
+			Files.move(tmp, snapshot, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(tmp);
+		}
+	}
+
+	/**
+	 * Replaces the contents of the DAOs with those of a snapshot
+	 * Nothing is changed if the snapshot is missing, corrupt, from another format version, or
+	 * any of the source files has changed since it was saved
+	 * @param snapshot the snapshot file to read
+	 * @param sources the files the DAOs would otherwise be loaded from
+	 * @return true if the DAOs were restored, false if the sources must be loaded instead
+	 */
+	public static boolean restore(Path snapshot, List<Path> sources, AircraftDAO aircraft, CrewDAO crew,
+			RouteDAO routes, PassengerNumbersDAO passengerNumbers) {
+		try {
+			if (!Files.isRegularFile(snapshot)) {
+				return false;
+			}
+			MappedByteBuffer mapped;
+			try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+				if (channel.size() < HEADER_BYTES || channel.size() > Integer.MAX_VALUE) {
+					return reject(snapshot, "unexpected size " + channel.size());
+				}
+				mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+			if (mapped.getInt() != MAGIC) {
+				return reject(snapshot, "not a snapshot file");
+			}
+			int version = mapped.getInt();
+			if (version != FORMAT_VERSION) {
+				return reject(snapshot, "format version " + version);
+			}
+			long length = mapped.getLong();
+			long checksum = mapped.getLong();
+			if (length != mapped.remaining()) {
+				return reject(snapshot, "truncated");
+			}
+			ByteBuffer payload = mapped.slice();
+			//the source stamps come first so a stale snapshot is rejected before the checksum pass,
+			//and a source whose size has changed before its contents are read
+			if (!sourcesMatch(payload.duplicate(), sources)) {
+				return reject(snapshot, "source files have changed");
+			}
+			CRC32 crc = new CRC32();
+			crc.update(payload.duplicate());
+			if (crc.getValue() != checksum) {
+				return reject(snapshot, "checksum mismatch");
+			}
+			return readPayload(payload, aircraft, crew, routes, passengerNumbers);
+		}
+		catch (Exception e) {
+			//a damaged snapshot is never fatal, the sources are simply loaded instead
+			LOG.log(Level.WARNING, "Could not restore snapshot " + snapshot, e);
+			return false;
+		}
+	}
+
+	private static boolean reject(Path snapshot, String reason) {
+		LOG.fine("Ignoring snapshot " + snapshot + ": " + reason);
+		return false;
+	}
+
+	private static void writePayload(DataOutputStream out, List<Path> sources, AircraftDAO aircraft, CrewDAO crew,
+			RouteDAO routes, PassengerForecastStore forecasts) throws IOException {
+		out.writeInt(sources.size());
+		for (Path source : sources) {
+			writeString(out, source.toAbsolutePath().normalize().toString());
+			out.writeLong(Files.size(source));
+			out.writeLong(checksum(source));
+		}
+
+		//each DAO is read from one version, so a load landing part way through cannot mix two
+		List<Aircraft> allAircraft = aircraft.getAllAircraft();
+		CrewDAO.Data crewData = crew.current();
+		List<Pilot> pilots = crewData.pilots;
+		List<CabinCrew> cabinCrew = crewData.cabinCrew;
+		List<Route> allRoutes = routes.getAllRoutes();
+
+		//codes and names repeat across thousands of records, so each distinct string is written once
+		LinkedHashMap<String, Integer> strings = new LinkedHashMap<String, Integer>();
+		for (Aircraft a : allAircraft) {
+			intern(strings, a.getTailCode(), a.getTypeCode(), a.getModel(), a.getStartingPosition(),
+					a.getManufacturer() == null ? null : a.getManufacturer().name());
+		}
+		for (Pilot p : pilots) {
+			internCrew(strings, p);
+			intern(strings, p.getRank() == null ? null : p.getRank().name());
+		}
+		for (CabinCrew c : cabinCrew) {
+			internCrew(strings, c);
+		}
+		for (Route r : allRoutes) {
+			intern(strings, r.getDayOfWeek(), r.getDepartureAirport(), r.getDepartureAirportCode(),
+					r.getArrivalAirport(), r.getArrivalAirportCode());
+		}
+		out.writeInt(strings.size());
+		for (String s : strings.keySet()) {
+			writeString(out, s);
+		}
+
+		out.writeInt(allAircraft.size());
+		for (Aircraft a : allAircraft) {
+			out.writeInt(id(strings, a.getTailCode()));
+			out.writeInt(id(strings, a.getTypeCode()));
+			out.writeInt(id(strings, a.getManufacturer() == null ? null : a.getManufacturer().name()));
+			out.writeInt(id(strings, a.getModel()));
+			out.writeInt(a.getSeats());
+			out.writeInt(a.getCabinCrewRequired());
+			out.writeInt(id(strings, a.getStartingPosition()));
+		}
+		out.writeInt(pilots.size());
+		for (Pilot p : pilots) {
+			writeCrew(out, strings, p);
+			out.writeInt(id(strings, p.getRank() == null ? null : p.getRank().name()));
+		}
+		out.writeInt(cabinCrew.size());
+		for (CabinCrew c : cabinCrew) {
+			writeCrew(out, strings, c);
+		}
+		out.writeInt(allRoutes.size());
+		for (Route r : allRoutes) {
+			out.writeInt(r.getFlightNumber());
+			out.writeInt(id(strings, r.getDayOfWeek()));
+			out.writeInt(id(strings, r.getDepartureAirport()));
+			out.writeInt(id(strings, r.getDepartureAirportCode()));
+			out.writeInt(id(strings, r.getArrivalAirport()));
+			out.writeInt(id(strings, r.getArrivalAirportCode()));
+			out.writeLong(r.getDuration() == null ? NONE : r.getDuration().getSeconds());
+			out.writeInt(r.getDepartureTime() == null ? NONE : r.getDepartureTime().toSecondOfDay());
+			out.writeInt(r.getArrivalTime() == null ? NONE : r.getArrivalTime().toSecondOfDay());
+		}
+
+		//the forecast table is written slot for slot in the little-endian off-heap layout
+		out.writeInt(forecasts.capacity());
+		out.writeInt(forecasts.size());
+		for (int slot = 0; slot < forecasts.capacity(); slot++) {
+			out.writeLong(Long.reverseBytes(forecasts.keyAt(slot)));
+			out.writeInt(Integer.reverseBytes(forecasts.valueAt(slot)));
+		}
+	}
+
+	private static boolean sourcesMatch(ByteBuffer in, List<Path> sources) throws IOException {
+		if (in.getInt() != sources.size()) {
+			return false;
+		}
+		for (Path source : sources) {
+			if (!readString(in).equals(source.toAbsolutePath().normalize().toString())
+					|| !Files.isRegularFile(source)
+					|| in.getLong() != Files.size(source)
+					|| in.getLong() != checksum(source)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The CRC32 of a file's contents
+	 */
+	static long checksum(Path file) throws IOException {
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			while (channel.read(buffer) >= 0) {
+				buffer.flip();
+				crc.update(buffer);
+				buffer.clear();
+			}
+		}
+		return crc.getValue();
+	}
+
+	private static boolean readPayload(ByteBuffer in, AircraftDAO aircraftDAO, CrewDAO crewDAO, RouteDAO routeDAO,
+			PassengerNumbersDAO passengerNumbersDAO) {
+		int sourceCount = in.getInt();
+		for (int i = 0; i < sourceCount; i++) {
+			readString(in);
+			in.getLong();
+			in.getLong();
+		}
+		String[] strings = new String[in.getInt()];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = readString(in);
+		}
+
+		//everything is decoded before any DAO is touched, so a bad record leaves them as they were
+		int aircraftCount = in.getInt();
+		List<Aircraft> aircraft = new ArrayList<Aircraft>(aircraftCount);
+		for (int i = 0; i < aircraftCount; i++) {
+			Aircraft a = new Aircraft();
+			a.setTailCode(string(strings, in.getInt()));
+			a.setTypeCode(code(strings, in.getInt()));
+			String manufacturer = string(strings, in.getInt());
+			a.setManufacturer(manufacturer == null ? null : Manufacturer.valueOf(manufacturer));
+			a.setModel(string(strings, in.getInt()));
+			a.setSeats(in.getInt());
+			a.setCabinCrewRequired(in.getInt());
+			a.setStartingPosition(code(strings, in.getInt()));
+			aircraft.add(a);
+		}
+		int pilotCount = in.getInt();
+		List<Pilot> pilots = new ArrayList<Pilot>(pilotCount);
+		for (int i = 0; i < pilotCount; i++) {
+			Pilot p = new Pilot();
+			readCrew(in, strings, p);
+			String rank = string(strings, in.getInt());
+			p.setRank(rank == null ? null : Pilot.Rank.valueOf(rank));
+			pilots.add(p);
+		}
+		int cabinCrewCount = in.getInt();
+		List<CabinCrew> cabinCrew = new ArrayList<CabinCrew>(cabinCrewCount);
+		for (int i = 0; i < cabinCrewCount; i++) {
+			CabinCrew c = new CabinCrew();
+			readCrew(in, strings, c);
+			cabinCrew.add(c);
+		}
+		int routeCount = in.getInt();
+		List<Route> routes = new ArrayList<Route>(routeCount);
+		for (int i = 0; i < routeCount; i++) {
+			Route r = new Route();
+			r.setFlightNumber(in.getInt());
+			r.setDayOfWeek(code(strings, in.getInt()));
+			r.setDepartureAirport(string(strings, in.getInt()));
+			r.setDepartureAirportCode(code(strings, in.getInt()));
+			r.setArrivalAirport(string(strings, in.getInt()));
+			r.setArrivalAirportCode(code(strings, in.getInt()));
+			long duration = in.getLong();
+			r.setDuration(duration == NONE ? null : Duration.ofSeconds(duration));
+			int departure = in.getInt();
+			r.setDepartureTime(departure == NONE ? null : LocalTime.ofSecondOfDay(departure));
+			int arrival = in.getInt();
+			r.setArrivalTime(arrival == NONE ? null : LocalTime.ofSecondOfDay(arrival));
+			routes.add(r);
+		}
+		int capacity = in.getInt();
+		int size = in.getInt();
+		if (capacity < 0 || capacity > PassengerForecastStore.MAX_CAPACITY) {
+			throw new IllegalArgumentException("Not a forecast table of " + capacity + " slots");
+		}
+		ByteBuffer slots = in.slice();
+		slots.limit(capacity * PassengerForecastStore.SLOT_BYTES);
+		PassengerForecastStore forecasts = PassengerForecastStore.wrap(slots, capacity, size);
+
+		aircraftDAO.restore(aircraft);
+		crewDAO.restore(pilots, cabinCrew);
+		routeDAO.restore(routes);
+		passengerNumbersDAO.restore(forecasts);
+		return true;
+	}
+
+	private static void internCrew(LinkedHashMap<String, Integer> strings, Crew c) {
+		intern(strings, c.getForename(), c.getSurname(), c.getHomeBase());
+		for (String typeCode : c.getTypeRatings()) {
+			intern(strings, typeCode);
+		}
+	}
+
+	private static void writeCrew(DataOutputStream out, LinkedHashMap<String, Integer> strings, Crew c) throws IOException {
+		out.writeInt(id(strings, c.getForename()));
+		out.writeInt(id(strings, c.getSurname()));
+		out.writeInt(id(strings, c.getHomeBase()));
+		out.writeInt(c.getTypeRatings().size());
+		for (String typeCode : c.getTypeRatings()) {
+			out.writeInt(id(strings, typeCode));
+		}
+	}
+
+	private static void readCrew(ByteBuffer in, String[] strings, Crew c) {
+		c.setForename(string(strings, in.getInt()));
+		c.setSurname(string(strings, in.getInt()));
+		c.setHomeBase(code(strings, in.getInt()));
+		for (int ratings = in.getInt(); ratings > 0; ratings--) {
+			c.setQualifiedFor(code(strings, in.getInt()));
+		}
+	}
+
+	private static void intern(LinkedHashMap<String, Integer> strings, String... values) {
+		for (String value : values) {
+			if (value != null && !strings.containsKey(value)) {
+				strings.put(value, strings.size());
+			}
+		}
+	}
+
+	private static int id(LinkedHashMap<String, Integer> strings, String value) {
+		return value == null ? NONE : strings.get(value);
+	}
+
+	private static String string(String[] strings, int id) {
+		return id == NONE ? null : strings[id];
+	}
+
+	/**
+	 * Reads an airport, type or day code as its canonical instance
+	 */
+	private static String code(String[] strings, int id) {
+		return CodeDictionary.canonical(string(strings, id));
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer in) {
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
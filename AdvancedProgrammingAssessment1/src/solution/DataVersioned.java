@@ -0,0 +1,12 @@
+package solution;
+
+/**
+ * A DAO that can say when its data has changed, so results worked out from it can be kept
+ * until then
+ */
+public interface DataVersioned {
+	/**
+	 * A number that changes whenever the data is loaded, reloaded or reset
+	 */
+	long getDataVersion();
+}
@@ -0,0 +1,373 @@
+package solution;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.DataLoadingException;
+import baseclasses.Pilot;
+import baseclasses.Route;
+
+/**
+ * Watches loaded aircraft, crew and route files and applies any change to their DAOs while
+ * the program keeps running
+ *
+ * When a watched file changes that file, and no other, is parsed again in full. Its records
+ * are matched with the ones it held before, aircraft by tail code, crew by name and home base
+ * and routes by flight number and day, and the records added, updated or removed are changed
+ * in a copy of the DAO's records, which is published as one new version. Each change is then
+ * passed to the listeners, so a running scheduler can plan again only what was affected
+ *
+ * This is not incremental below the file: the whole file is read again, and the DAO indexes
+ * the new version from scratch as it would after a load, so applying a change costs about as
+ * much as loading the file. Records the change leaves alone are kept as the same objects
+ *
+ * Keys need not be unique, as two crew members can share a name and a base: records with the
+ * same key are told apart by their content, see RecordDiff. A file that cannot be parsed,
+ * perhaps because it is still being written, is left as it was until it next changes
+ */
+public class DataWatcher implements Closeable {
+	private static final Logger LOG = Logger.getLogger(DataWatcher.class.getName());
+	/** Changes closer together than this are handled as one, as editors often write a file in steps */
+	static final long SETTLE_MILLIS = 200;
+
+	private final AircraftDAO aircraft;
+	private final CrewDAO crew;
+	private final RouteDAO routes;
+	private final WatchService watchService;
+	private final LinkedHashMap<Path, WatchedFile<?>> files = new LinkedHashMap<Path, WatchedFile<?>>();
+	private final Set<Path> directories = new HashSet<Path>();
+	private final List<DataChangeListener> listeners = new CopyOnWriteArrayList<DataChangeListener>();
+	private Thread thread;
+
+	public DataWatcher(AircraftDAO aircraft, CrewDAO crew, RouteDAO routes) throws IOException {
+		this.aircraft = aircraft;
+		this.crew = crew;
+		this.routes = routes;
+		this.watchService = FileSystems.getDefault().newWatchService();
+	}
+
+	/**
+	 * Watches an aircraft file that has already been loaded into the AircraftDAO
+	 * @throws DataLoadingException if the file cannot be read as it is now
+	 */
+	public void watchAircraft(Path p) throws DataLoadingException {
+		watch(new AircraftFile(p));
+	}
+
+	/**
+	 * Watches a crew file that has already been loaded into the CrewDAO
+	 * @throws DataLoadingException if the file cannot be read as it is now
+	 */
+	public void watchCrew(Path p) throws DataLoadingException {
+		watch(new CrewFile(p));
+	}
+
+	/**
+	 * Watches a routes file that has already been loaded into the RouteDAO
+	 * @throws DataLoadingException if the file cannot be read as it is now
+	 */
+	public void watchRoutes(Path p) throws DataLoadingException {
+		watch(new RouteFile(p));
+	}
+
+	public void addListener(DataChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(DataChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	/**
+	 * Starts watching on a background daemon thread
+	 */
+	public synchronized void start() {
+		if (thread == null) {
+			thread = new Thread(this::run, "data-watcher");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	/**
+	 * Stops watching, no further changes are applied
+	 */
+	@Override
+	public void close() throws IOException {
+		watchService.close();
+		Thread running;
+		synchronized (this) {
+			running = thread;
+		}
+		if (running != null) {
+			running.interrupt();
+		}
+	}
+
+	/**
+	 * Checks a watched file straight away rather than waiting to be told it changed
+	 * @return true if any change was applied
+	 */
+	public synchronized boolean check(Path p) {
+		WatchedFile<?> file = files.get(p.toAbsolutePath().normalize());
+		if (file == null) {
+			return false;
+		}
+		return file.check();
+	}
+
+	private synchronized void watch(WatchedFile<?> file) throws DataLoadingException {
+		try {
+			file.readBaseline();
+			Path directory = file.path.getParent();
+			if (directories.add(directory)) {
+				directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+			}
+		}
+		catch (Exception e) {
+			throw new DataLoadingException(e);
+		}
+		files.put(file.path, file);
+	}
+
+	private void run() {
+		try {
+			while (true) {
+				Set<Path> changed = new HashSet<Path>();
+				boolean overflow = collect(watchService.take(), changed);
+				//let the writes settle, gathering any further events for the same files
+				WatchKey key;
+				while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+					overflow |= collect(key, changed);
+				}
+				synchronized (this) {
+					for (WatchedFile<?> file : files.values()) {
+						if (overflow || changed.contains(file.path)) {
+							file.check();
+						}
+					}
+				}
+			}
+		}
+		catch (InterruptedException | ClosedWatchServiceException stopped) {
+			//close() was called
+		}
+	}
+
+	/**
+	 * Adds the files named by a key's events to a set
+	 * @return true if events were lost and every file should be checked
+	 */
+	private static boolean collect(WatchKey key, Set<Path> changed) {
+		boolean overflow = false;
+		Path directory = (Path) key.watchable();
+		for (WatchEvent<?> event : key.pollEvents()) {
+			if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+				overflow = true;
+			}
+			else {
+				changed.add(directory.resolve((Path) event.context()).toAbsolutePath().normalize());
+			}
+		}
+		key.reset();
+		return overflow;
+	}
+
+	private void publish(DataChangeEvent<?> event) {
+		LOG.info("Reloaded " + event);
+		for (DataChangeListener listener : listeners) {
+			try {
+				listener.dataChanged(event);
+			}
+			catch (RuntimeException e) {
+				LOG.log(Level.WARNING, "Data change listener failed", e);
+			}
+		}
+	}
+
+	/**
+	 * The size and modification time of a file, so repeated events for one write are ignored
+	 */
+	private static class Stamp {
+		final long modified;
+		final long size;
+
+		Stamp(long modified, long size) {
+			this.modified = modified;
+			this.size = size;
+		}
+
+		static Stamp of(Path p) throws IOException {
+			return new Stamp(Files.getLastModifiedTime(p).toMillis(), Files.size(p));
+		}
+
+		boolean sameAs(Stamp other) {
+			return other != null && modified == other.modified && size == other.size;
+		}
+	}
+
+	/**
+	 * One watched file and the records it held when last read
+	 * @param <R> how the records are held, in file order
+	 */
+	private abstract static class WatchedFile<R> {
+		final Path path;
+		Stamp stamp;
+		R records;
+
+		WatchedFile(Path p) {
+			this.path = p.toAbsolutePath().normalize();
+		}
+
+		abstract R read() throws Exception;
+
+		/**
+		 * Reads the file as it is now, which later readings are compared with
+		 */
+		void readBaseline() throws Exception {
+			stamp = Stamp.of(path);
+			records = read();
+		}
+
+		/**
+		 * Applies the differences between two readings of the file
+		 * @return true if there were any
+		 */
+		abstract boolean apply(R before, R after);
+
+		boolean check() {
+			Stamp now;
+			R after;
+			try {
+				now = Stamp.of(path);
+				if (now.sameAs(stamp)) {
+					return false;
+				}
+				after = read();
+			}
+			catch (Exception e) {
+				//most likely still being written, the next event will try again
+				LOG.log(Level.FINE, "Could not read " + path, e);
+				return false;
+			}
+			R before = records;
+			stamp = now;
+			records = after;
+			return apply(before, after);
+		}
+	}
+
+	private class AircraftFile extends WatchedFile<List<Aircraft>> {
+		AircraftFile(Path p) {
+			super(p);
+		}
+
+		@Override
+		List<Aircraft> read() throws IOException {
+			List<Aircraft> loaded = new ArrayList<Aircraft>();
+			AircraftDAO.readAircraftFile(path, loaded);
+			return loaded;
+		}
+
+		@Override
+		boolean apply(List<Aircraft> before, List<Aircraft> after) {
+			RecordDiff<Aircraft> diff = RecordDiff.between(before, after, RecordKeys::aircraftKey,
+					RecordKeys::aircraftFingerprint);
+			if (diff.isEmpty()) {
+				return false;
+			}
+			aircraft.apply(diff);
+			publish(new DataChangeEvent<Aircraft>(DataChangeEvent.Kind.AIRCRAFT, path, diff, aircraft.getDataVersion()));
+			return true;
+		}
+	}
+
+	/**
+	 * A crew file's pilots and cabin crew, each in file order
+	 */
+	private static class CrewRecords {
+		final List<Pilot> pilots;
+		final List<CabinCrew> cabinCrew;
+
+		CrewRecords(List<Pilot> pilots, List<CabinCrew> cabinCrew) {
+			this.pilots = pilots;
+			this.cabinCrew = cabinCrew;
+		}
+	}
+
+	private class CrewFile extends WatchedFile<CrewRecords> {
+		CrewFile(Path p) {
+			super(p);
+		}
+
+		@Override
+		CrewRecords read() throws IOException {
+			List<Pilot> pilots = new ArrayList<Pilot>();
+			List<CabinCrew> cabinCrew = new ArrayList<CabinCrew>();
+			try (BufferedReader br = Files.newBufferedReader(path)) {
+				new CrewJsonReader(br).read(pilots::add, cabinCrew::add);
+			}
+			return new CrewRecords(pilots, cabinCrew);
+		}
+
+		@Override
+		boolean apply(CrewRecords before, CrewRecords after) {
+			RecordDiff<Pilot> pilots = RecordDiff.between(before.pilots, after.pilots, RecordKeys::crewKey,
+					RecordKeys::crewFingerprint);
+			RecordDiff<CabinCrew> cabinCrew = RecordDiff.between(before.cabinCrew, after.cabinCrew,
+					RecordKeys::crewKey, RecordKeys::crewFingerprint);
+			if (pilots.isEmpty() && cabinCrew.isEmpty()) {
+				return false;
+			}
+			crew.apply(pilots, cabinCrew);
+			if (!pilots.isEmpty()) {
+				publish(new DataChangeEvent<Pilot>(DataChangeEvent.Kind.PILOTS, path, pilots, crew.getDataVersion()));
+			}
+			if (!cabinCrew.isEmpty()) {
+				publish(new DataChangeEvent<CabinCrew>(DataChangeEvent.Kind.CABIN_CREW, path, cabinCrew, crew.getDataVersion()));
+			}
+			return true;
+		}
+	}
+
+	private class RouteFile extends WatchedFile<List<Route>> {
+		RouteFile(Path p) {
+			super(p);
+		}
+
+		@Override
+		List<Route> read() throws Exception {
+			return RouteDAO.readRouteFile(path);
+		}
+
+		@Override
+		boolean apply(List<Route> before, List<Route> after) {
+			RecordDiff<Route> diff = RecordDiff.between(before, after, RecordKeys::routeKey, RecordKeys::routeFingerprint);
+			if (diff.isEmpty()) {
+				return false;
+			}
+			routes.apply(diff);
+			publish(new DataChangeEvent<Route>(DataChangeEvent.Kind.ROUTES, path, diff, routes.getDataVersion()));
+			return true;
+		}
+	}
+}
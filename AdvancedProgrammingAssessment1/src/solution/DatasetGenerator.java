@@ -0,0 +1,368 @@
+package solution;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Writes a synthetic data set in exactly the formats the four DAOs read: aircraft.csv,
+ * crew.json, routes.xml and passengernumbers.db
+ * The same seed and settings always produce the same files, and every file is written as
+ * a stream, so the size of the data set is only limited by disk space
+ *
+ * Run from the command line with any of the settings as --name=value, for example
+ * java solution.DatasetGenerator --out=./bigdata --airports=200 --aircraft=5000 --forecastYears=3
+ */
+public class DatasetGenerator {
+	/** The aircraft types that can be generated, with their manufacturer, model, seats and cabin crew */
+	public static final String[] TYPE_CODES = { "A319", "A320", "A321", "B737", "B738", "E190", "AT72", "DH8D" };
+	private static final String[] MANUFACTURERS = { "Airbus", "Airbus", "Airbus", "Boeing", "Boeing", "Embraer", "Atr", "Bombardier" };
+	private static final String[] MODELS = { "A319-100", "A320-200", "A321-200", "737-700", "737-800", "E190", "ATR 72-600", "Dash 8 Q400" };
+	private static final int[] SEATS = { 144, 180, 220, 149, 189, 100, 70, 78 };
+	private static final int[] CABIN_CREW = { 3, 4, 5, 3, 4, 2, 2, 2 };
+	private static final String[] FORENAMES = { "Alex", "Sam", "Jo", "Chris", "Pat", "Robin", "Jamie", "Charlie", "Morgan", "Taylor" };
+	private static final String[] SURNAMES = { "Smith", "Jones", "Patel", "Brown", "Khan", "Evans", "Wilson", "Taylor", "Hughes", "Wright" };
+	private static final int BATCH_SIZE = 10000;
+
+	private long seed = 1;
+	private int airports = 10;
+	private int aircraft = 40;
+	private double[] typeMix;
+	private int pilotsPerBase = 12;
+	private int cabinCrewPerBase = 24;
+	private int routes = 280;
+	private double skew = 1.0;
+	private LocalDate firstForecastDay = LocalDate.of(2020, 7, 1);
+	private int forecastDays = 365;
+	private boolean indexForecasts = true;
+
+	/**
+	 * Sets the seed all random choices are made from
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * Sets how many airports aircraft, crew and routes are spread across
+	 */
+	public void setAirports(int airports) {
+		if (airports < 2 || airports > 26 * 26 * 26) {
+			throw new IllegalArgumentException("airports must be between 2 and 17576");
+		}
+		this.airports = airports;
+	}
+
+	public void setAircraft(int aircraft) {
+		this.aircraft = aircraft;
+	}
+
+	/**
+	 * Sets how often each of TYPE_CODES is chosen, relative to the others
+	 * @param weights one weight per entry of TYPE_CODES, or null for an even mix
+	 */
+	public void setTypeMix(double[] weights) {
+		if (weights != null && weights.length != TYPE_CODES.length) {
+			throw new IllegalArgumentException("Expected " + TYPE_CODES.length + " type weights");
+		}
+		this.typeMix = weights;
+	}
+
+	public void setPilotsPerBase(int pilotsPerBase) {
+		this.pilotsPerBase = pilotsPerBase;
+	}
+
+	public void setCabinCrewPerBase(int cabinCrewPerBase) {
+		this.cabinCrewPerBase = cabinCrewPerBase;
+	}
+
+	/**
+	 * Sets how many weekly routes there are, flight numbers run from 1 to this number
+	 */
+	public void setRoutes(int routes) {
+		this.routes = routes;
+	}
+
+	/**
+	 * Sets how unevenly traffic is spread over the airports, as the exponent of a Zipf distribution
+	 * 0 spreads aircraft and routes evenly, 1 (the default) makes the first airport the busiest by far
+	 */
+	public void setSkew(double skew) {
+		this.skew = skew;
+	}
+
+	public void setFirstForecastDay(LocalDate firstForecastDay) {
+		this.firstForecastDay = firstForecastDay;
+	}
+
+	public void setForecastDays(int forecastDays) {
+		this.forecastDays = forecastDays;
+	}
+
+	/**
+	 * Sets whether the forecast table gets indexes for date range and single flight lookups
+	 */
+	public void setIndexForecasts(boolean indexForecasts) {
+		this.indexForecasts = indexForecasts;
+	}
+
+	public int getRoutes() {
+		return routes;
+	}
+
+	public int getAirports() {
+		return airports;
+	}
+
+	public LocalDate getFirstForecastDay() {
+		return firstForecastDay;
+	}
+
+	public int getForecastDays() {
+		return forecastDays;
+	}
+
+	/**
+	 * Returns the three letter code of an airport, AAA for the first, AAB for the second and so on
+	 */
+	public static String airportCode(int airport) {
+		char[] code = { (char) ('A' + airport / (26 * 26)), (char) ('A' + airport / 26 % 26), (char) ('A' + airport % 26) };
+		return new String(code);
+	}
+
+	/**
+	 * The day of the week a generated flight number operates on, as written to routes.xml
+	 */
+	public static DayOfWeek dayOfWeek(int flightNumber) {
+		return DayOfWeek.of((flightNumber - 1) % 7 + 1);
+	}
+
+	/**
+	 * Writes all four files into a directory, creating it if needed
+	 * @throws IOException if a file cannot be written
+	 * @throws SQLException if the passenger numbers database cannot be written
+	 */
+	public void generate(Path directory) throws IOException, SQLException {
+		Files.createDirectories(directory);
+		//each file gets its own stream of random numbers, so changing one setting does not reshuffle the others
+		writeAircraft(directory.resolve("aircraft.csv"), new Random(seed));
+		writeCrew(directory.resolve("crew.json"), new Random(seed + 1));
+		int[] seats = writeRoutes(directory.resolve("routes.xml"), new Random(seed + 2));
+		writePassengerNumbers(directory.resolve("passengernumbers.db"), seats, new Random(seed + 3));
+	}
+
+	private void writeAircraft(Path file, Random random) throws IOException {
+		double[] airportWeights = zipf(airports);
+		double[] typeWeights = cumulative(typeMix != null ? typeMix : evenWeights(TYPE_CODES.length));
+		try (Writer out = Files.newBufferedWriter(file)) {
+			out.write("TailCode,TypeCode,Manufacturer,Model,Seats,CabinCrewRequired,StartingPosition\n");
+			for (int i = 0; i < aircraft; i++) {
+				int type = pick(typeWeights, random);
+				out.write("G-" + airportCode(i % (26 * 26 * 26)) + (i / (26 * 26 * 26) == 0 ? "" : String.valueOf(i / (26 * 26 * 26))));
+				out.write(',' + TYPE_CODES[type] + ',' + MANUFACTURERS[type] + ',' + MODELS[type] + ',' + SEATS[type]
+						+ ',' + CABIN_CREW[type] + ',' + airportCode(pick(airportWeights, random)) + '\n');
+			}
+		}
+	}
+
+	private void writeCrew(Path file, Random random) throws IOException {
+		double[] typeWeights = cumulative(typeMix != null ? typeMix : evenWeights(TYPE_CODES.length));
+		try (Writer out = new BufferedWriter(Files.newBufferedWriter(file), 1 << 16)) {
+			out.write("{\n\t\"pilots\": [");
+			boolean first = true;
+			for (int base = 0; base < airports; base++) {
+				for (int i = 0; i < pilotsPerBase; i++) {
+					out.write(first ? "\n\t\t" : ",\n\t\t");
+					first = false;
+					writeCrewMember(out, random, base, typeWeights, i % 2 == 0 ? "CAPTAIN" : "FIRST_OFFICER");
+				}
+			}
+			out.write("\n\t],\n\t\"cabincrew\": [");
+			first = true;
+			for (int base = 0; base < airports; base++) {
+				for (int i = 0; i < cabinCrewPerBase; i++) {
+					out.write(first ? "\n\t\t" : ",\n\t\t");
+					first = false;
+					writeCrewMember(out, random, base, typeWeights, null);
+				}
+			}
+			out.write("\n\t]\n}\n");
+		}
+	}
+
+	private static void writeCrewMember(Writer out, Random random, int base, double[] typeWeights, String rank) throws IOException {
+		out.write("{\"forename\": \"" + FORENAMES[random.nextInt(FORENAMES.length)]
+				+ "\", \"surname\": \"" + SURNAMES[random.nextInt(SURNAMES.length)] + "\", ");
+		if (rank != null) {
+			out.write("\"rank\": \"" + rank + "\", ");
+		}
+		out.write("\"homebase\": \"" + airportCode(base) + "\", \"typeRatings\": [");
+		//one or two type ratings, drawn from the same mix as the fleet
+		int first = pick(typeWeights, random);
+		out.write("\"" + TYPE_CODES[first] + "\"");
+		int second = pick(typeWeights, random);
+		if (random.nextBoolean() && second != first) {
+			out.write(", \"" + TYPE_CODES[second] + "\"");
+		}
+		out.write("]}");
+	}
+
+	/**
+	 * @return the seats of a typical aircraft for each flight number, used to size its forecasts
+	 */
+	private int[] writeRoutes(Path file, Random random) throws IOException {
+		double[] airportWeights = zipf(airports);
+		int[] seats = new int[routes + 1];
+		try (Writer out = new BufferedWriter(Files.newBufferedWriter(file), 1 << 16)) {
+			out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<Routes>\n");
+			for (int flightNumber = 1; flightNumber <= routes; flightNumber++) {
+				int from = pick(airportWeights, random);
+				int to = pick(airportWeights, random);
+				if (to == from) {
+					to = (from + 1 + random.nextInt(airports - 1)) % airports;
+				}
+				LocalTime departure = LocalTime.of(6 + random.nextInt(16), random.nextInt(12) * 5);
+				Duration duration = Duration.ofMinutes(40 + random.nextInt(36) * 5);
+				seats[flightNumber] = SEATS[random.nextInt(SEATS.length)];
+				String dayOfWeek = dayOfWeek(flightNumber).name();
+				out.write("\t<Route>\n\t\t<FlightNumber>" + flightNumber + "</FlightNumber>\n"
+						+ "\t\t<DayOfWeek>" + dayOfWeek.charAt(0) + dayOfWeek.substring(1, 3).toLowerCase(Locale.ROOT) + "</DayOfWeek>\n"
+						+ "\t\t<DepartureTime>" + departure + "</DepartureTime>\n"
+						+ "\t\t<DepartureAirport>Airport " + airportCode(from) + "</DepartureAirport>\n"
+						+ "\t\t<DepartureAirportCode>" + airportCode(from) + "</DepartureAirportCode>\n"
+						+ "\t\t<ArrivalTime>" + departure.plus(duration) + "</ArrivalTime>\n"
+						+ "\t\t<ArrivalAirport>Airport " + airportCode(to) + "</ArrivalAirport>\n"
+						+ "\t\t<ArrivalAirportCode>" + airportCode(to) + "</ArrivalAirportCode>\n"
+						+ "\t\t<Duration>" + duration + "</Duration>\n\t</Route>\n");
+			}
+			out.write("</Routes>\n");
+		}
+		return seats;
+	}
+
+	private void writePassengerNumbers(Path file, int[] seats, Random random) throws IOException, SQLException {
+		Files.deleteIfExists(file);
+		try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.toAbsolutePath())) {
+			try (Statement stmt = conn.createStatement()) {
+				//nothing needs to survive a crash half way through generating
+				stmt.execute("PRAGMA journal_mode=OFF");
+				stmt.execute("PRAGMA synchronous=OFF");
+				stmt.execute("CREATE TABLE PassengerNumbers (Date TEXT, FlightNumber INTEGER, Passengers INTEGER)");
+			}
+			conn.setAutoCommit(false);
+			try (PreparedStatement insert = conn.prepareStatement("INSERT INTO PassengerNumbers (Date, FlightNumber, Passengers) VALUES (?, ?, ?)")) {
+				int batched = 0;
+				for (int day = 0; day < forecastDays; day++) {
+					LocalDate date = firstForecastDay.plusDays(day);
+					String dateText = date.toString();
+					for (int flightNumber = date.getDayOfWeek().getValue(); flightNumber <= routes; flightNumber += 7) {
+						insert.setString(1, dateText);
+						insert.setInt(2, flightNumber);
+						//loads mostly between 40% and 100% of a typical aircraft, now and then more
+						insert.setInt(3, (int) (seats[flightNumber] * (0.4 + random.nextDouble() * 0.7)));
+						insert.addBatch();
+						if (++batched == BATCH_SIZE) {
+							insert.executeBatch();
+							conn.commit();
+							batched = 0;
+						}
+					}
+				}
+				insert.executeBatch();
+			}
+			if (indexForecasts) {
+				try (Statement stmt = conn.createStatement()) {
+					stmt.execute("CREATE INDEX PassengerNumbersByDate ON PassengerNumbers (Date)");
+					stmt.execute("CREATE INDEX PassengerNumbersByFlight ON PassengerNumbers (FlightNumber, Date)");
+				}
+			}
+			conn.commit();
+		}
+	}
+
+	private double[] zipf(int n) {
+		double[] weights = new double[n];
+		for (int i = 0; i < n; i++) {
+			weights[i] = 1.0 / Math.pow(i + 1, skew);
+		}
+		return cumulative(weights);
+	}
+
+	private static double[] evenWeights(int n) {
+		double[] weights = new double[n];
+		Arrays.fill(weights, 1.0);
+		return weights;
+	}
+
+	private static double[] cumulative(double[] weights) {
+		double[] totals = new double[weights.length];
+		double total = 0;
+		for (int i = 0; i < weights.length; i++) {
+			total += weights[i];
+			totals[i] = total;
+		}
+		return totals;
+	}
+
+	/**
+	 * Picks an index with probability proportional to its weight, by binary search of the running totals
+	 */
+	private static int pick(double[] cumulativeWeights, Random random) {
+		double target = random.nextDouble() * cumulativeWeights[cumulativeWeights.length - 1];
+		int i = Arrays.binarySearch(cumulativeWeights, target);
+		return i >= 0 ? i : Math.min(-i - 1, cumulativeWeights.length - 1);
+	}
+
+	public static void main(String[] args) throws IOException, SQLException {
+		DatasetGenerator generator = new DatasetGenerator();
+		Path out = Paths.get("./generated");
+		for (String arg : args) {
+			int equals = arg.indexOf('=');
+			if (!arg.startsWith("--") || equals < 0) {
+				throw new IllegalArgumentException("Expected --name=value but found " + arg);
+			}
+			String name = arg.substring(2, equals);
+			String value = arg.substring(equals + 1);
+			switch (name) {
+			case "out": out = Paths.get(value); break;
+			case "seed": generator.setSeed(Long.parseLong(value)); break;
+			case "airports": generator.setAirports(Integer.parseInt(value)); break;
+			case "aircraft": generator.setAircraft(Integer.parseInt(value)); break;
+			case "pilotsPerBase": generator.setPilotsPerBase(Integer.parseInt(value)); break;
+			case "cabinCrewPerBase": generator.setCabinCrewPerBase(Integer.parseInt(value)); break;
+			case "routes": generator.setRoutes(Integer.parseInt(value)); break;
+			case "skew": generator.setSkew(Double.parseDouble(value)); break;
+			case "firstForecastDay": generator.setFirstForecastDay(LocalDate.parse(value)); break;
+			case "forecastDays": generator.setForecastDays(Integer.parseInt(value)); break;
+			case "forecastYears": generator.setForecastDays(Integer.parseInt(value) * 365); break;
+			case "indexForecasts": generator.setIndexForecasts(Boolean.parseBoolean(value)); break;
+			case "typeMix":
+				String[] parts = value.split(",");
+				double[] weights = new double[parts.length];
+				for (int i = 0; i < parts.length; i++) {
+					weights[i] = Double.parseDouble(parts[i]);
+				}
+				generator.setTypeMix(weights);
+				break;
+			default: throw new IllegalArgumentException("Unknown setting " + name);
+			}
+		}
+		long start = System.nanoTime();
+		generator.generate(out);
+		System.out.println("Generated data set in " + out.toAbsolutePath() + " in " + (System.nanoTime() - start) / 1000000 + "ms");
+	}
+}
@@ -0,0 +1,89 @@
+package solution;
+import java.time.LocalDate;
+
+import baseclasses.Aircraft;
+import baseclasses.Crew;
+
+/**
+ * Something that stops part of an existing schedule being flown, given to Scheduler.repairSchedule()
+ * Aircraft and crew are unavailable on whole days, from the first to the last date inclusive
+ */
+public class Disruption {
+	private enum Type {
+		AIRCRAFT_GROUNDED, CREW_UNAVAILABLE, ROUTE_CANCELLED
+	}
+
+	private final Type type;
+	private final String tailCode;
+	private final Crew crew;
+	private final int flightNumber;
+	private final LocalDate from;
+	private final LocalDate to;
+
+	private Disruption(Type type, String tailCode, Crew crew, int flightNumber, LocalDate from, LocalDate to) {
+		if (to.isBefore(from)) {
+			throw new IllegalArgumentException("Disruption ends before it starts: " + from + " to " + to);
+		}
+		this.type = type;
+		this.tailCode = tailCode;
+		this.crew = crew;
+		this.flightNumber = flightNumber;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * An aircraft that cannot fly between two dates, such as one that is AOG
+	 */
+	public static Disruption aircraftGrounded(String tailCode, LocalDate from, LocalDate to) {
+		return new Disruption(Type.AIRCRAFT_GROUNDED, tailCode, null, 0, from, to);
+	}
+
+	/**
+	 * A pilot or cabin crew member who cannot work between two dates, such as one who is sick
+	 * The crew member is matched by identity, as two crew can share a name and home base, so it
+	 * must be the one from the DAOs the schedule was made with
+	 */
+	public static Disruption crewUnavailable(Crew crew, LocalDate from, LocalDate to) {
+		return new Disruption(Type.CREW_UNAVAILABLE, null, crew, 0, from, to);
+	}
+
+	/**
+	 * A route that will not be flown on one date
+	 */
+	public static Disruption routeCancelled(int flightNumber, LocalDate date) {
+		return new Disruption(Type.ROUTE_CANCELLED, null, null, flightNumber, date, date);
+	}
+
+	/**
+	 * True if this disruption stops an aircraft flying a flight departing and landing at these times
+	 */
+	boolean grounds(Aircraft aircraft, LocalDate departure, LocalDate landing) {
+		return type == Type.AIRCRAFT_GROUNDED && tailCode.equals(aircraft.getTailCode()) && overlaps(departure, landing);
+	}
+
+	/**
+	 * True if this disruption stops a crew member working a flight departing and landing at these times
+	 */
+	boolean excludes(Crew crew, LocalDate departure, LocalDate landing) {
+		return type == Type.CREW_UNAVAILABLE && this.crew == crew && overlaps(departure, landing);
+	}
+
+	boolean cancels(int flightNumber, LocalDate departure) {
+		return type == Type.ROUTE_CANCELLED && this.flightNumber == flightNumber && from.equals(departure);
+	}
+
+	private boolean overlaps(LocalDate departure, LocalDate landing) {
+		return !landing.isBefore(from) && !departure.isAfter(to);
+	}
+
+	@Override
+	public String toString() {
+		switch (type) {
+		case AIRCRAFT_GROUNDED: return "Aircraft " + tailCode + " grounded " + from + " to " + to;
+		case CREW_UNAVAILABLE: return crew.getForename() + " " + crew.getSurname() + " of " + crew.getHomeBase()
+				+ " unavailable " + from + " to " + to;
+		default: return "Flight " + flightNumber + " cancelled on " + from;
+		}
+	}
+}
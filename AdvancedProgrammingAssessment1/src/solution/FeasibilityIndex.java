@@ -0,0 +1,607 @@
+package solution;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.TreeMap;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
+import baseclasses.IAircraftDAO;
+import baseclasses.ICrewDAO;
+import baseclasses.Pilot;
+
+/**
+ * The aircraft and crew of one version of the DAOs compiled into dense integer IDs and bit
+ * masks, so the candidates for a flight come from ANDing masks instead of filtering lists
+ *
+ * All resources share one ID space: aircraft first, numbered smallest first, then pilots and
+ * then cabin crew in DAO order, so walking the set bits of a mask visits them in the order the
+ * scheduler ranks them. There is a mask per type rating and per airport (where an aircraft
+ * starts or a crew member is based)
+ *
+ * The masks never change once built and can be read by any thread, so one index serves every
+ * schedule made while the aircraft and crew are unchanged. What each schedule has booked is
+ * kept apart from it in Bookings
+ */
+class FeasibilityIndex {
+	/** The length of the time slots Bookings indexes stays on the ground by */
+	static final long SLOT_MINUTES = 60;
+
+	//the index's own codes, dropped with it once the scheduler moves on to newer DAO data
+	private final CodeDictionary codes = new CodeDictionary();
+	private final Aircraft[] aircraft;
+	private final Pilot[] pilots;
+	private final CabinCrew[] cabinCrew;
+	private final int pilotsFrom;
+	private final int cabinCrewFrom;
+	private final int size;
+	//seats of each aircraft by ID, which is ascending
+	private final int[] seats;
+	//folded ID of where each resource starts, its starting position or home base
+	private final int[] startsAt;
+	private final Map<Object, Integer> ids = new IdentityHashMap<Object, Integer>();
+	//by CodeDictionary ID for types and folded ID for airports, which are matched ignoring case
+	private final CodeMap<BitSet> byType = new CodeMap<BitSet>();
+	private final CodeMap<BitSet> byAirport = new CodeMap<BitSet>();
+	//aircraft by the folded ID of their starting position, then by the ID of their type
+	private final CodeMap<CodeMap<BitSet>> aircraftByAirportAndType = new CodeMap<CodeMap<BitSet>>();
+	private final BitSet captains = new BitSet();
+
+	FeasibilityIndex(List<Aircraft> allAircraft, List<Pilot> allPilots, List<CabinCrew> allCabinCrew) {
+		List<Aircraft> bySeats = new ArrayList<Aircraft>(allAircraft);
+		bySeats.sort((a, b) -> Integer.compare(a.getSeats(), b.getSeats()));
+		aircraft = bySeats.toArray(new Aircraft[bySeats.size()]);
+		pilots = allPilots.toArray(new Pilot[allPilots.size()]);
+		cabinCrew = allCabinCrew.toArray(new CabinCrew[allCabinCrew.size()]);
+		pilotsFrom = aircraft.length;
+		cabinCrewFrom = pilotsFrom + pilots.length;
+		size = cabinCrewFrom + cabinCrew.length;
+
+		seats = new int[aircraft.length];
+		startsAt = new int[size];
+		for (int id = 0; id < aircraft.length; id++) {
+			Aircraft a = aircraft[id];
+			seats[id] = a.getSeats();
+			ids.put(a, id);
+			startsAt[id] = codes.folded(codes.id(a.getStartingPosition()));
+			mask(byAirport, startsAt[id]).set(id);
+			CodeMap<BitSet> types = aircraftByAirportAndType.get(startsAt[id]);
+			if (types == null) {
+				types = new CodeMap<BitSet>();
+				aircraftByAirportAndType.put(startsAt[id], types);
+			}
+			mask(types, codes.id(a.getTypeCode())).set(id);
+		}
+		for (int i = 0; i < pilots.length; i++) {
+			int id = pilotsFrom + i;
+			addCrew(pilots[i], id);
+			if (pilots[i].getRank() == Pilot.Rank.CAPTAIN) {
+				captains.set(id);
+			}
+		}
+		for (int i = 0; i < cabinCrew.length; i++) {
+			addCrew(cabinCrew[i], cabinCrewFrom + i);
+		}
+	}
+
+	static FeasibilityIndex of(IAircraftDAO aircraftDAO, ICrewDAO crewDAO) {
+		return new FeasibilityIndex(aircraftDAO.getAllAircraft(), crewDAO.getAllPilots(), crewDAO.getAllCabinCrew());
+	}
+
+	private void addCrew(Crew crew, int id) {
+		ids.put(crew, id);
+		startsAt[id] = codes.folded(codes.id(crew.getHomeBase()));
+		mask(byAirport, startsAt[id]).set(id);
+		for (String typeCode : crew.getTypeRatings()) {
+			mask(byType, codes.id(typeCode)).set(id);
+		}
+	}
+
+	private static BitSet mask(CodeMap<BitSet> masks, int id) {
+		BitSet mask = masks.get(id);
+		if (mask == null) {
+			mask = new BitSet();
+			masks.put(id, mask);
+		}
+		return mask;
+	}
+
+	/**
+	 * Aircraft that could fly from an airport with a number of passengers, most suitable first:
+	 * those already there and big enough, then any big enough, then the rest of those there,
+	 * each group smallest first
+	 */
+	Ranked<Aircraft> aircraftFor(String airport, int passengers) {
+		BitSet here = range(0, aircraft.length);
+		here.and(maskOrEmpty(byAirport, codes.findIgnoreCase(airport)));
+		BitSet bigEnough = range(firstWithSeats(passengers), aircraft.length);
+
+		BitSet first = (BitSet) here.clone();
+		first.and(bigEnough);
+		bigEnough.andNot(first);
+		here.andNot(first);
+		int[] ranked = new int[first.cardinality() + bigEnough.cardinality() + here.cardinality()];
+		int count = addAll(first, ranked, 0);
+		count = addAll(bigEnough, ranked, count);
+		addAll(here, ranked, count);
+		here.or(first);
+		here.or(bigEnough);
+		return new Ranked<Aircraft>(ranked, here, aircraft, 0);
+	}
+
+	/**
+	 * The smallest aircraft starting at an airport with enough seats, of one of the types or of
+	 * any type if typeCodes is null, or null if there is none; of aircraft the same size, the
+	 * first in the aircraft list
+	 * Aircraft IDs go up with seats, so this is the binary search of firstWithSeats() and then
+	 * the first set bit from there in each mask, with nothing allocated
+	 */
+	Aircraft bestFit(String airport, int passengers, List<String> typeCodes) {
+		int airportId = codes.findIgnoreCase(airport);
+		int from = firstWithSeats(passengers);
+		int best;
+		if (typeCodes == null) {
+			best = firstAircraftIn(byAirport.get(airportId), from);
+		}
+		else {
+			best = aircraft.length;
+			CodeMap<BitSet> types = aircraftByAirportAndType.get(airportId);
+			for (int i = 0; types != null && i < typeCodes.size(); i++) {
+				best = Math.min(best, firstAircraftIn(types.get(codes.find(typeCodes.get(i))), from));
+			}
+		}
+		return best < aircraft.length ? aircraft[best] : null;
+	}
+
+	/**
+	 * The first aircraft ID in a mask from an ID on, or aircraft.length if there is none
+	 */
+	private int firstAircraftIn(BitSet mask, int from) {
+		int id = mask == null ? -1 : mask.nextSetBit(from);
+		return id < 0 || id >= aircraft.length ? aircraft.length : id;
+	}
+
+	/**
+	 * Captains or first officers rated on any of the types, type by type, and for each type
+	 * those based at the airport first
+	 */
+	Ranked<Pilot> pilotsFor(List<String> typeCodes, String airport, boolean captain) {
+		BitSet ranked = range(pilotsFrom, cabinCrewFrom);
+		if (captain) {
+			ranked.and(captains);
+		}
+		else {
+			ranked.andNot(captains);
+		}
+		return crewFor(typeCodes, airport, ranked, pilots, pilotsFrom);
+	}
+
+	/**
+	 * Cabin crew rated on any of the types, in the same order as pilotsFor()
+	 */
+	Ranked<CabinCrew> cabinCrewFor(List<String> typeCodes, String airport) {
+		return crewFor(typeCodes, airport, range(cabinCrewFrom, size), cabinCrew, cabinCrewFrom);
+	}
+
+	private <T> Ranked<T> crewFor(List<String> typeCodes, String airport, BitSet allowed, T[] crew, int firstId) {
+		BitSet based = maskOrEmpty(byAirport, codes.findIgnoreCase(airport));
+		BitSet seen = new BitSet(size);
+		List<BitSet> groups = new ArrayList<BitSet>();
+		for (String typeCode : typeCodes) {
+			BitSet rated = (BitSet) maskOrEmpty(byType, codes.find(typeCode)).clone();
+			rated.and(allowed);
+			rated.andNot(seen);
+			BitSet home = (BitSet) rated.clone();
+			home.and(based);
+			rated.andNot(home);
+			groups.add(home);
+			groups.add(rated);
+			seen.or(home);
+			seen.or(rated);
+		}
+		int[] ranked = new int[seen.cardinality()];
+		int count = 0;
+		for (BitSet group : groups) {
+			count = addAll(group, ranked, count);
+		}
+		return new Ranked<T>(ranked, seen, crew, firstId);
+	}
+
+	/**
+	 * Copies the set bits of a mask into an array from a position
+	 * @return the position after the last one copied
+	 */
+	private static int addAll(BitSet ids, int[] into, int at) {
+		for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+			into[at++] = id;
+		}
+		return at;
+	}
+
+	/**
+	 * A read-only list of resources held as their IDs in rank order, along with a mask of the
+	 * same IDs, so the scheduler can test them against other masks without looking IDs up
+	 * @param <T> the kind of resource
+	 */
+	static class Ranked<T> extends AbstractList<T> implements RandomAccess {
+		private final int[] ids;
+		private final BitSet members;
+		private final T[] resources;
+		private final int firstId;
+
+		Ranked(int[] ids, BitSet members, T[] resources, int firstId) {
+			this.ids = ids;
+			this.members = members;
+			this.resources = resources;
+			this.firstId = firstId;
+		}
+
+		@Override
+		public T get(int index) {
+			return resources[ids[index] - firstId];
+		}
+
+		int idAt(int index) {
+			return ids[index];
+		}
+
+		T byId(int id) {
+			return resources[id - firstId];
+		}
+
+		/**
+		 * The IDs of the members that are also in a mask
+		 */
+		BitSet membersIn(BitSet mask) {
+			BitSet both = (BitSet) members.clone();
+			both.and(mask);
+			return both;
+		}
+
+		@Override
+		public int size() {
+			return ids.length;
+		}
+	}
+
+	/**
+	 * True if the crew member with an ID holds a type rating
+	 * Crew from another version of the DAO have no ID and are checked directly
+	 */
+	boolean isQualified(int id, Crew crew, String typeCode) {
+		if (id < 0) {
+			return crew.getTypeRatings().contains(typeCode);
+		}
+		BitSet rated = byType.get(codes.find(typeCode));
+		return rated != null && rated.get(id);
+	}
+
+	/**
+	 * The ID of an aircraft or crew member, or -1 if it is from another version of the DAOs
+	 */
+	int idOf(Object resource) {
+		Integer id = ids.get(resource);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * The ID of the resource at a position in a list, which is free to find for a Ranked list
+	 */
+	int idAt(List<?> resources, int index) {
+		if (resources instanceof Ranked) {
+			return ((Ranked<?>) resources).idAt(index);
+		}
+		return idOf(resources.get(index));
+	}
+
+	/**
+	 * The folded ID of an airport, which with seatClass() decides the aircraft candidates
+	 */
+	int airportId(String airport) {
+		return codes.findIgnoreCase(airport);
+	}
+
+	/**
+	 * The ID of the smallest aircraft with enough seats, the same for every number of passengers
+	 * that gives the same aircraft candidates
+	 */
+	int seatClass(int passengers) {
+		return firstWithSeats(passengers);
+	}
+
+	/**
+	 * Starts an empty set of bookings for one schedule
+	 */
+	Bookings newBookings() {
+		return new Bookings();
+	}
+
+	/**
+	 * What one schedule has booked, only touched by the thread committing its allocations
+	 *
+	 * Each resource has a Rotation of its flights sorted by departure, so whether it is free for
+	 * a flight and where it is at any time are both one binary search however long the schedule
+	 * gets. Each airport also indexes the stays on the ground there by time, so finding what is
+	 * at an airport at a time only looks at what was there around then:
+	 * - resources not yet booked, from the airport's mask in the index
+	 * - booked resources still at their start, by the minute of their first departure
+	 * - resources whose last booked flight lands there
+	 * - stays between two flights, in every slot of SLOT_MINUTES they overlap
+	 * A stay split by a flight booked into the middle of it is left in its old slots, so the
+	 * candidates are checked against the rotations before being returned
+	 * Resources from another version of the DAOs are not in the index, so they always look free
+	 * and never on the ground; the Schedule has the final say either way
+	 */
+	class Bookings {
+		private final Rotation[] rotations = new Rotation[size];
+		private final BitSet booked = new BitSet(size);
+		//all by folded airport ID
+		private final CodeMap<TreeMap<Long, BitSet>> leavingHome = new CodeMap<TreeMap<Long, BitSet>>();
+		private final CodeMap<BitSet> landedLast = new CodeMap<BitSet>();
+		private final CodeMap<HashMap<Long, BitSet>> staysBySlot = new CodeMap<HashMap<Long, BitSet>>();
+
+		FeasibilityIndex index() {
+			return FeasibilityIndex.this;
+		}
+
+		/**
+		 * True unless the resource with an ID is booked on a flight overlapping the time from
+		 * departure to landing, in minutes from minuteOf()
+		 */
+		boolean isFree(int id, long departure, long landing) {
+			return id < 0 || rotations[id] == null || rotations[id].isFree(departure, landing);
+		}
+
+		/**
+		 * The IDs of everything on the ground at an airport at a time, to be passed to isIn()
+		 */
+		BitSet onGround(String airport, LocalDateTime time) {
+			int airportId = codes.findIgnoreCase(airport);
+			long minute = minuteOf(time);
+			BitSet here = (BitSet) maskOrEmpty(byAirport, airportId).clone();
+			here.andNot(booked);
+			TreeMap<Long, BitSet> leaving = leavingHome.get(airportId);
+			if (leaving != null) {
+				//positionAt() puts a resource at its start until after its first departure
+				for (BitSet stillHome : leaving.tailMap(minute, true).values()) {
+					here.or(stillHome);
+				}
+			}
+			addOnGround(landedLast.get(airportId), airportId, minute, here);
+			HashMap<Long, BitSet> slots = staysBySlot.get(airportId);
+			if (slots != null) {
+				addOnGround(slots.get(Math.floorDiv(minute, SLOT_MINUTES)), airportId, minute, here);
+			}
+			return here;
+		}
+
+		private void addOnGround(BitSet mayBeHere, int airportId, long minute, BitSet here) {
+			if (mayBeHere == null) {
+				return;
+			}
+			for (int id = mayBeHere.nextSetBit(0); id >= 0; id = mayBeHere.nextSetBit(id + 1)) {
+				if (!here.get(id) && positionAt(id, minute) == airportId) {
+					here.set(id);
+				}
+			}
+		}
+
+		boolean isIn(BitSet mask, int id) {
+			return id >= 0 && mask.get(id);
+		}
+
+		/**
+		 * The folded ID of the airport a resource is at, or NONE while it is flying
+		 */
+		private int positionAt(int id, long minute) {
+			Rotation rotation = rotations[id];
+			return rotation == null ? startsAt[id] : rotation.positionAt(minute, startsAt[id]);
+		}
+
+		/**
+		 * Adds a flight to an aircraft's or crew member's rotation
+		 */
+		void book(FlightInfo flight, Object resource) {
+			Integer id = ids.get(resource);
+			if (id == null) {
+				return;
+			}
+			Rotation rotation = rotations[id];
+			if (rotation == null) {
+				rotation = new Rotation();
+				rotations[id] = rotation;
+				booked.set(id);
+			}
+			int arrival = codes.folded(codes.id(flight.getFlight().getArrivalAirportCode()));
+			long departure = minuteOf(flight.getDepartureDateTime());
+			long landing = minuteOf(flight.getLandingDateTime());
+			int at = rotation.add(departure, landing, arrival);
+			int last = rotation.size() - 1;
+			if (at == 0) {
+				//the stay at the start now ends with this flight
+				TreeMap<Long, BitSet> leaving = leavingHome.get(startsAt[id]);
+				if (leaving == null) {
+					leaving = new TreeMap<Long, BitSet>();
+					leavingHome.put(startsAt[id], leaving);
+				}
+				if (last > 0) {
+					clear(leaving, rotation.departure(1), id);
+				}
+				leaving.computeIfAbsent(departure, d -> new BitSet()).set(id);
+			}
+			else if (at == last) {
+				//as does the stay where the flight before it landed
+				BitSet landed = landedLast.get(rotation.arrival(at - 1));
+				if (landed != null) {
+					landed.clear(id);
+				}
+				addStay(rotation.arrival(at - 1), rotation.landing(at - 1), departure, id);
+			}
+			if (at == last) {
+				mask(landedLast, arrival).set(id);
+			}
+			else {
+				addStay(arrival, landing, rotation.departure(at + 1), id);
+			}
+		}
+
+		/**
+		 * Puts a stay on the ground from landing to the next departure in every slot it overlaps
+		 */
+		private void addStay(int airportId, long from, long to, int id) {
+			HashMap<Long, BitSet> slots = staysBySlot.get(airportId);
+			if (slots == null) {
+				slots = new HashMap<Long, BitSet>();
+				staysBySlot.put(airportId, slots);
+			}
+			for (long slot = Math.floorDiv(from, SLOT_MINUTES); slot <= Math.floorDiv(to, SLOT_MINUTES); slot++) {
+				slots.computeIfAbsent(slot, s -> new BitSet()).set(id);
+			}
+		}
+
+		private void clear(TreeMap<Long, BitSet> byMinute, long minute, int id) {
+			BitSet ids = byMinute.get(minute);
+			if (ids == null) {
+				return;
+			}
+			ids.clear(id);
+			if (ids.isEmpty()) {
+				byMinute.remove(minute);
+			}
+		}
+	}
+
+	/**
+	 * The flights booked for one resource as parallel arrays sorted by departure, in minutes
+	 * since the epoch
+	 * Booked flights do not overlap, so the landings are in order too
+	 */
+	static class Rotation {
+		private long[] departures = new long[4];
+		private long[] landings = new long[4];
+		private int[] arrivals = new int[4];
+		private int size;
+
+		/**
+		 * True if nothing booked overlaps the time from departure to landing
+		 */
+		boolean isFree(long departure, long landing) {
+			int last = lastDepartingBefore(landing);
+			return last < 0 || landings[last] <= departure;
+		}
+
+		/**
+		 * Where the last flight landed before a time, the starting airport if there was none, or
+		 * NONE if a flight is in the air then
+		 */
+		int positionAt(long minute, int start) {
+			int last = lastDepartingBefore(minute);
+			if (last < 0) {
+				return start;
+			}
+			return landings[last] <= minute ? arrivals[last] : CodeDictionary.NONE;
+		}
+
+		/**
+		 * Books a flight
+		 * @return its index in departure order
+		 */
+		int add(long departure, long landing, int arrival) {
+			//flights are mostly booked in departure order, so this is nearly always an append
+			int at = lastDepartingBefore(departure + 1) + 1;
+			if (size == departures.length) {
+				departures = Arrays.copyOf(departures, size * 2);
+				landings = Arrays.copyOf(landings, size * 2);
+				arrivals = Arrays.copyOf(arrivals, size * 2);
+			}
+			System.arraycopy(departures, at, departures, at + 1, size - at);
+			System.arraycopy(landings, at, landings, at + 1, size - at);
+			System.arraycopy(arrivals, at, arrivals, at + 1, size - at);
+			departures[at] = departure;
+			landings[at] = landing;
+			arrivals[at] = arrival;
+			size++;
+			return at;
+		}
+
+		int size() {
+			return size;
+		}
+
+		long departure(int index) {
+			return departures[index];
+		}
+
+		long landing(int index) {
+			return landings[index];
+		}
+
+		int arrival(int index) {
+			return arrivals[index];
+		}
+
+		/**
+		 * The index of the last flight departing before a time, or -1
+		 */
+		private int lastDepartingBefore(long minute) {
+			int low = 0;
+			int high = size;
+			while (low < high) {
+				int mid = (low + high) >>> 1;
+				if (departures[mid] < minute) {
+					low = mid + 1;
+				}
+				else {
+					high = mid;
+				}
+			}
+			return low - 1;
+		}
+	}
+
+	/**
+	 * A time in minutes since the epoch, as kept in the rotations
+	 */
+	static long minuteOf(LocalDateTime time) {
+		return Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60L);
+	}
+
+	/**
+	 * The ID of the smallest aircraft with at least this many seats
+	 */
+	private int firstWithSeats(int passengers) {
+		int low = 0;
+		int high = seats.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (seats[mid] < passengers) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private static BitSet range(int from, int to) {
+		BitSet range = new BitSet(to);
+		range.set(from, to);
+		return range;
+	}
+
+	private static BitSet maskOrEmpty(CodeMap<BitSet> masks, int id) {
+		BitSet mask = masks.get(id);
+		return mask != null ? mask : new BitSet();
+	}
+}
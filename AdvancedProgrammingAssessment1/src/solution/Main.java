@@ -1,12 +1,7 @@
 package solution;
 
-import java.nio.file.Path;
 import java.nio.file.Paths;
 import baseclasses.DataLoadingException;
-import baseclasses.IAircraftDAO;
-import baseclasses.ICrewDAO;
-import baseclasses.IPassengerNumbersDAO;
-import baseclasses.IRouteDAO;
 
 /**
  * This class allows you to run the code in your classes yourself, for testing and development
@@ -14,26 +9,34 @@ import baseclasses.IRouteDAO;
 public class Main {
 
 	public static void main(String[] args) {	
-		IAircraftDAO aircraft = new AircraftDAO();
-		ICrewDAO crew = new CrewDAO();
-		IPassengerNumbersDAO passengers = new PassengerNumbersDAO();
-		IRouteDAO route = new RouteDAO();
+		AircraftDAO aircraft = new AircraftDAO();
+		CrewDAO crew = new CrewDAO();
+		PassengerNumbersDAO passengers = new PassengerNumbersDAO();
+		RouteDAO route = new RouteDAO();
+		//run with -Dsolution.metrics=true to see where the time goes
+		if (Metrics.isEnabled()) {
+			Metrics.registerMBean();
+		}
+		//the four kinds of data are loaded at the same time, each kind's files still in this order
+		DataLoader loader = new DataLoader(aircraft, crew, route, passengers);
+		loader.addAircraftFile(Paths.get("./data/aircraft.csv"));
+		loader.addAircraftFile(Paths.get("./data/mini_aircraft.csv"));
+		loader.addAircraftFile(Paths.get("./data/malformed_aircraft1.csv"));
+		loader.addCrewFile(Paths.get("./data/crew.json"));
+		loader.addCrewFile(Paths.get("./data/mini_crew.json"));
+		loader.addPassengerNumbersFile(Paths.get("./data/passengernumbers.db"));
+		loader.addRouteFile(Paths.get("./data/routes.xml"));
 		try {
-			aircraft.loadAircraftData(Paths.get("./data/aircraft.csv"));
-			aircraft.loadAircraftData(Paths.get("./data/mini_aircraft.csv"));
-			aircraft.loadAircraftData(Paths.get("./data/malformed_aircraft1.csv"));
-			aircraft.findAircraftBySeats(329);
-			crew.loadCrewData(Paths.get("./data/crew.json"));
-			crew.loadCrewData(Paths.get("./data/mini_crew.json"));
-			Path db = Paths.get("./data/passengernumbers.db");
-			passengers.loadPassengerNumbersData(db);
-		route.loadRouteData(Paths.get("./data/routes.xml"));
-			
+			loader.load();
 		}
 		catch (DataLoadingException dle) {
-			System.err.println("Error loading aircraft data");
+			System.err.println("Error loading data");
 			dle.printStackTrace();
 		}
+		aircraft.findAircraftBySeats(329);
+		if (Metrics.isEnabled()) {
+			System.out.print(Metrics.dump());
+		}
 	}
 
 }
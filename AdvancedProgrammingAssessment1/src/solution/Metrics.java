@@ -0,0 +1,324 @@
+package solution;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency timers for the DAOs and the Scheduler, shared by the whole process
+ *
+ * Metrics are off unless the solution.metrics system property is true or setEnabled(true) is
+ * called. While off, start() returns 0 without reading the clock and every record call returns
+ * straight away, so instrumented code pays one volatile read. While on, recording is a few
+ * LongAdder increments with no locking
+ *
+ * Everything can be read through the MetricsMXBean registered by registerMBean(), under
+ * solution:type=Metrics, or written to a file at a fixed rate by dumpEvery()
+ */
+public final class Metrics {
+	private static final Logger LOG = Logger.getLogger(Metrics.class.getName());
+	static final String OBJECT_NAME = "solution:type=Metrics";
+
+	private static volatile boolean enabled = Boolean.getBoolean("solution.metrics");
+	private static final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+	private static final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<String, Timer>();
+
+	private Metrics() {
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Turns recording on or off; what has been recorded so far is kept either way
+	 */
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	/**
+	 * Returns the counter with a name, creating it the first time
+	 */
+	static Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			counters.putIfAbsent(name, new Counter());
+			counter = counters.get(name);
+		}
+		return counter;
+	}
+
+	/**
+	 * Returns the timer with a name, creating it the first time
+	 */
+	static Timer timer(String name) {
+		Timer timer = timers.get(name);
+		if (timer == null) {
+			timers.putIfAbsent(name, new Timer());
+			timer = timers.get(name);
+		}
+		return timer;
+	}
+
+	/**
+	 * The time to pass to Timer.record() once the work being timed is done, or 0 when disabled
+	 */
+	static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records how long a source took to load and how many records it held, under the kind of
+	 * data and the source's file name, e.g. "aircraft.load[aircraft.csv]"
+	 * @param start the value of start() before the load began
+	 */
+	static void recordLoad(String kind, Path source, long start, int records) {
+		if (start == 0) {
+			return;
+		}
+		String name = kind + ".load[" + source.getFileName() + "]";
+		timer(name).record(start);
+		counter(name + ".records").add(records);
+	}
+
+	/**
+	 * Sets every counter and timer back to zero
+	 */
+	public static void reset() {
+		for (Counter counter : counters.values()) {
+			counter.reset();
+		}
+		for (Timer timer : timers.values()) {
+			timer.reset();
+		}
+	}
+
+	/**
+	 * Every counter and timer as text, one per line in name order
+	 */
+	public static String dump() {
+		StringBuilder text = new StringBuilder();
+		for (Map.Entry<String, Long> counter : counterValues().entrySet()) {
+			text.append(counter.getKey()).append(' ').append(counter.getValue()).append('\n');
+		}
+		for (Map.Entry<String, TimerStats> timer : timerStats().entrySet()) {
+			text.append(timer.getKey()).append(' ').append(timer.getValue()).append('\n');
+		}
+		return text.toString();
+	}
+
+	static Map<String, Long> counterValues() {
+		TreeMap<String, Long> values = new TreeMap<String, Long>();
+		for (Map.Entry<String, Counter> counter : counters.entrySet()) {
+			values.put(counter.getKey(), counter.getValue().get());
+		}
+		return values;
+	}
+
+	static Map<String, TimerStats> timerStats() {
+		TreeMap<String, TimerStats> stats = new TreeMap<String, TimerStats>();
+		for (Map.Entry<String, Timer> timer : timers.entrySet()) {
+			stats.put(timer.getKey(), timer.getValue().stats());
+		}
+		return stats;
+	}
+
+	/**
+	 * Registers the MetricsMXBean with the platform MBean server, if it is not registered already
+	 */
+	public static synchronized void registerMBean() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			server.registerMBean(new Bean(), new ObjectName(OBJECT_NAME));
+		}
+		catch (InstanceAlreadyExistsException e) {
+			//already registered
+		}
+		catch (Exception e) {
+			LOG.log(Level.WARNING, "Could not register metrics MBean", e);
+		}
+	}
+
+	/**
+	 * Writes dump() to a file at a fixed rate on a daemon thread until the result is closed
+	 * Each dump is written to a temporary file that is then moved over the last one, so a
+	 * reader never sees half a dump
+	 */
+	public static Closeable dumpEvery(Path file, long period, TimeUnit unit) {
+		ScheduledExecutorService dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "metrics-dump");
+			thread.setDaemon(true);
+			return thread;
+		});
+		dumper.scheduleAtFixedRate(() -> {
+			try {
+				writeDump(file);
+			}
+			catch (IOException e) {
+				LOG.log(Level.WARNING, "Could not write metrics to " + file, e);
+			}
+		}, period, period, unit);
+		return dumper::shutdownNow;
+	}
+
+	static void writeDump(Path file) throws IOException {
+		Path dir = file.toAbsolutePath().getParent();
+		Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+		try {
+			try (Writer out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+				out.write(dump());
+			}
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * A count of events, such as cache hits
+	 */
+	static final class Counter {
+		private final LongAdder count = new LongAdder();
+
+		void increment() {
+			if (enabled) {
+				count.increment();
+			}
+		}
+
+		void add(long n) {
+			if (enabled) {
+				count.add(n);
+			}
+		}
+
+		long get() {
+			return count.sum();
+		}
+
+		void reset() {
+			count.reset();
+		}
+	}
+
+	/**
+	 * A latency histogram with one bucket per power of two nanoseconds
+	 * Percentiles are reported as the upper bound of the bucket they fall in, capped at the
+	 * slowest time seen, so they are at most double the true value, which is plenty to see
+	 * which path has got slower
+	 */
+	static final class Timer {
+		private final LongAdder[] buckets = new LongAdder[64];
+		private final LongAdder totalNanos = new LongAdder();
+		private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+
+		Timer() {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] = new LongAdder();
+			}
+		}
+
+		/**
+		 * Records the time since start, which came from Metrics.start()
+		 */
+		void record(long start) {
+			if (start != 0) {
+				recordNanos(System.nanoTime() - start);
+			}
+		}
+
+		void recordNanos(long nanos) {
+			if (nanos < 0) {
+				nanos = 0;
+			}
+			buckets[64 - Long.numberOfLeadingZeros(nanos)].increment();
+			totalNanos.add(nanos);
+			maxNanos.accumulate(nanos);
+		}
+
+		void reset() {
+			for (LongAdder bucket : buckets) {
+				bucket.reset();
+			}
+			totalNanos.reset();
+			maxNanos.reset();
+		}
+
+		TimerStats stats() {
+			long[] counts = new long[buckets.length];
+			long count = 0;
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] = buckets[i].sum();
+				count += counts[i];
+			}
+			long max = maxNanos.get();
+			return new TimerStats(count, totalNanos.sum(), Math.min(percentile(counts, count, 0.5), max),
+					Math.min(percentile(counts, count, 0.9), max), Math.min(percentile(counts, count, 0.99), max), max);
+		}
+
+		private static long percentile(long[] counts, long count, double fraction) {
+			long rank = (long) Math.ceil(count * fraction);
+			long seen = 0;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank && seen > 0) {
+					//bucket i holds values below 2^i
+					return i == 0 ? 0 : (i >= 63 ? Long.MAX_VALUE : (1L << i) - 1);
+				}
+			}
+			return 0;
+		}
+	}
+
+	private static class Bean implements MetricsMXBean {
+		@Override
+		public boolean isEnabled() {
+			return Metrics.isEnabled();
+		}
+
+		@Override
+		public void setEnabled(boolean enabled) {
+			Metrics.setEnabled(enabled);
+		}
+
+		@Override
+		public Map<String, Long> getCounters() {
+			return counterValues();
+		}
+
+		@Override
+		public Map<String, TimerStats> getTimers() {
+			return timerStats();
+		}
+
+		@Override
+		public void reset() {
+			Metrics.reset();
+		}
+
+		@Override
+		public String dump() {
+			return Metrics.dump();
+		}
+	}
+}
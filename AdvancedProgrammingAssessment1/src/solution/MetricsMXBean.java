@@ -0,0 +1,28 @@
+package solution;
+import java.util.Map;
+
+/**
+ * The JMX view of Metrics, registered as solution:type=Metrics by Metrics.registerMBean()
+ */
+public interface MetricsMXBean {
+	boolean isEnabled();
+
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Every counter by name, such as cache hits and records loaded
+	 */
+	Map<String, Long> getCounters();
+
+	/**
+	 * Every latency timer by name, such as finder calls and schedule phases
+	 */
+	Map<String, TimerStats> getTimers();
+
+	void reset();
+
+	/**
+	 * Everything as text, as written by Metrics.dumpEvery()
+	 */
+	String dump();
+}
@@ -0,0 +1,257 @@
+package solution;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * An open addressing hash table from (flight number, date) to a passenger forecast
+ * The flight number and epoch day are packed into a single long key, and keys and values
+ * are held in primitive arrays, or in a direct ByteBuffer outside the Java heap, so neither
+ * storing nor looking up a forecast allocates anything
+ * The off-heap layout is fixed little-endian, so a table saved in a snapshot can be used
+ * straight from a memory-mapped file
+ * A table holds at most MAX_SIZE forecasts, about 80 million, in either layout: the off-heap
+ * slots must fit in one ByteBuffer, whose size is an int, and a table kept on the heap must
+ * still fit in a snapshot. Adding more fails with an IllegalStateException, which the loaders
+ * report as a DataLoadingException
+ */
+class PassengerForecastStore {
+	/** Marks an unused slot, it would need an epoch day of -2^31 to clash with a real key */
+	static final long EMPTY = Long.MIN_VALUE;
+	/** Bytes per slot in the off-heap layout: an 8 byte key followed by a 4 byte value */
+	static final int SLOT_BYTES = 12;
+	private static final int MIN_CAPACITY = 16;
+	/** The most slots a table can have, the largest power of two with MAX_CAPACITY * SLOT_BYTES below 2^31 */
+	static final int MAX_CAPACITY = 1 << 27;
+	/** The most forecasts a table can hold, MAX_CAPACITY slots at the 0.6 load factor */
+	static final int MAX_SIZE = (int) (MAX_CAPACITY * 3L / 5);
+
+	private final boolean offHeap;
+	private long[] keys;
+	private int[] values;
+	private ByteBuffer slots;
+	private int capacity;
+	private int size;
+	//true while the slots are a read-only buffer shared with others, such as a mapped snapshot
+	private boolean shared;
+
+	/**
+	 * @param offHeap true to keep the table in a direct ByteBuffer rather than on the heap
+	 */
+	PassengerForecastStore(boolean offHeap) {
+		this.offHeap = offHeap;
+		allocate(MIN_CAPACITY);
+	}
+
+	/**
+	 * Wraps an existing off-heap table, such as one mapped from a snapshot, without copying it
+	 * The table is copied into memory of its own the first time it is changed
+	 * @param slots capacity * SLOT_BYTES bytes in the off-heap layout
+	 * @param capacity the number of slots, a power of two
+	 * @param size the number of slots in use
+	 */
+	static PassengerForecastStore wrap(ByteBuffer slots, int capacity, int size) {
+		if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY || slots.remaining() != capacity * SLOT_BYTES) {
+			throw new IllegalArgumentException("Not a forecast table of " + capacity + " slots");
+		}
+		PassengerForecastStore store = new PassengerForecastStore(true);
+		store.slots = slots.slice().order(ByteOrder.LITTLE_ENDIAN);
+		store.capacity = capacity;
+		store.size = size;
+		store.shared = true;
+		return store;
+	}
+
+	/**
+	 * Returns a table holding the same forecasts that can be changed without affecting this one
+	 */
+	PassengerForecastStore copy() {
+		PassengerForecastStore copy = new PassengerForecastStore(offHeap);
+		copy.capacity = capacity;
+		copy.size = size;
+		if (offHeap) {
+			copy.slots = copyOf(slots);
+		}
+		else {
+			copy.keys = keys.clone();
+			copy.values = values.clone();
+		}
+		return copy;
+	}
+
+	private static ByteBuffer copyOf(ByteBuffer slots) {
+		ByteBuffer copy = ByteBuffer.allocateDirect(slots.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+		ByteBuffer source = slots.duplicate();
+		source.clear();
+		copy.put(source);
+		return copy;
+	}
+
+	/**
+	 * Packs a flight number and epoch day into a single key
+	 */
+	static long key(int flightNumber, long epochDay) {
+		return (epochDay << 32) | (flightNumber & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Returns the forecast for a flight on a day, or -1 if there is none
+	 */
+	int get(int flightNumber, long epochDay) {
+		long key = key(flightNumber, epochDay);
+		int mask = capacity - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			long k = keyAt(slot);
+			if (k == key) {
+				return valueAt(slot);
+			}
+			if (k == EMPTY) {
+				return -1;
+			}
+		}
+	}
+
+	/**
+	 * Stores the forecast for a flight on a day, replacing any previous forecast
+	 * @throws IllegalStateException if the table already holds MAX_SIZE forecasts and this is a new one
+	 */
+	void put(int flightNumber, long epochDay, int passengers) {
+		if (shared) {
+			slots = copyOf(slots);
+			shared = false;
+		}
+		long key = key(flightNumber, epochDay);
+		//keep the load factor at or below 0.6 so probe sequences stay short
+		if ((size + 1) * 5L > capacity * 3L) {
+			if (capacity == MAX_CAPACITY) {
+				if (keyAt(find(key)) != key) {
+					throw new IllegalStateException("The passenger forecast table is full, it holds at most "
+							+ MAX_SIZE + " forecasts");
+				}
+			}
+			else {
+				resize(capacity * 2);
+			}
+		}
+		if (insert(key, passengers)) {
+			size++;
+		}
+	}
+
+	int size() {
+		return size;
+	}
+
+	boolean isOffHeap() {
+		return offHeap;
+	}
+
+	/**
+	 * The number of slots in the table, used slots are found with keyAt()
+	 */
+	int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Removes every forecast and shrinks the table back to its starting size
+	 */
+	void clear() {
+		shared = false;
+		allocate(MIN_CAPACITY);
+		size = 0;
+	}
+
+	/**
+	 * @return true if the key was new, false if an existing forecast was replaced
+	 */
+	private boolean insert(long key, int value) {
+		int slot = find(key);
+		boolean added = keyAt(slot) == EMPTY;
+		setSlot(slot, key, value);
+		return added;
+	}
+
+	/**
+	 * The slot holding a key, or the empty slot it would go in
+	 */
+	private int find(long key) {
+		int mask = capacity - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			long k = keyAt(slot);
+			if (k == EMPTY || k == key) {
+				return slot;
+			}
+		}
+	}
+
+	private void resize(int newCapacity) {
+		int oldCapacity = capacity;
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		ByteBuffer oldSlots = slots;
+		allocate(newCapacity);
+		for (int slot = 0; slot < oldCapacity; slot++) {
+			long k;
+			int v;
+			if (offHeap) {
+				k = oldSlots.getLong(slot * SLOT_BYTES);
+				v = oldSlots.getInt(slot * SLOT_BYTES + 8);
+			}
+			else {
+				k = oldKeys[slot];
+				v = oldValues[slot];
+			}
+			if (k != EMPTY) {
+				insert(k, v);
+			}
+		}
+	}
+
+	private void allocate(int newCapacity) {
+		capacity = newCapacity;
+		if (offHeap) {
+			slots = ByteBuffer.allocateDirect(newCapacity * SLOT_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			for (int slot = 0; slot < newCapacity; slot++) {
+				slots.putLong(slot * SLOT_BYTES, EMPTY);
+			}
+		}
+		else {
+			keys = new long[newCapacity];
+			values = new int[newCapacity];
+			Arrays.fill(keys, EMPTY);
+		}
+	}
+
+	/**
+	 * Returns the key in a slot, or EMPTY if the slot is unused
+	 */
+	long keyAt(int slot) {
+		return offHeap ? slots.getLong(slot * SLOT_BYTES) : keys[slot];
+	}
+
+	int valueAt(int slot) {
+		return offHeap ? slots.getInt(slot * SLOT_BYTES + 8) : values[slot];
+	}
+
+	private void setSlot(int slot, long key, int value) {
+		if (offHeap) {
+			slots.putLong(slot * SLOT_BYTES, key);
+			slots.putInt(slot * SLOT_BYTES + 8, value);
+		}
+		else {
+			keys[slot] = key;
+			values[slot] = value;
+		}
+	}
+
+	/**
+	 * Spreads the key bits so consecutive days and flight numbers do not cluster
+	 */
+	private static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+}
@@ -1,58 +1,171 @@
 package solution;
-import java.io.IOException;
 import java.nio.file.Path;
 import java.time.LocalDate;
-import java.util.HashMap;
-import java.sql.DriverManager;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import baseclasses.DataLoadingException;
 import baseclasses.IPassengerNumbersDAO;
+import solution.SQLiteConnectionPool.PooledConnection;
 
 /**
  * The PassengerNumbersDAO is responsible for loading an SQLite database
  * containing forecasts of passenger numbers for flights on dates
  */
-public class PassengerNumbersDAO implements IPassengerNumbersDAO {
-	private HashMap<String, Integer> passengerNumbers = new HashMap<String, Integer>();
+public class PassengerNumbersDAO implements IPassengerNumbersDAO, DataVersioned {
+	private static final String RANGE_SQL = "SELECT Date, FlightNumber, Passengers FROM PassengerNumbers WHERE Date BETWEEN ? AND ?";
+	private static final String COUNT_SQL = "SELECT COUNT(*) FROM PassengerNumbers";
+	//the first rowid of each of ? shards holding as near the same number of rows as possible
+	private static final String SHARD_STARTS_SQL = "SELECT MIN(rowid) FROM (SELECT rowid, NTILE(?) OVER (ORDER BY rowid) AS shard "
+			+ "FROM PassengerNumbers) GROUP BY shard ORDER BY shard";
+	private static final String SHARD_SQL = "SELECT Date, FlightNumber, Passengers FROM PassengerNumbers WHERE rowid BETWEEN ? AND ?";
+	//the fewest rows each shard of a parallel load reads; smaller tables are read in one go
+	private static final int SHARD_ROWS = 250000;
+	//how many shards each thread reads at most, so bigger tables have bigger shards
+	private static final int SHARDS_PER_THREAD = 4;
+	private static final int FETCH_SIZE = 10000;
+	private static final int MAX_IDLE_CONNECTIONS = 4;
+	private static final Logger LOG = Logger.getLogger(PassengerNumbersDAO.class.getName());
+	private static final Metrics.Timer GET_PASSENGER_NUMBERS_FOR = Metrics.timer("passengers.getPassengerNumbersFor");
+	private static final Metrics.Timer GET_PASSENGER_NUMBERS_FOR_BATCH = Metrics.timer("passengers.getPassengerNumbersFor[batch]");
+	private static final Metrics.Counter CACHE_HITS = Metrics.counter("passengers.cache.hits");
+	private static final Metrics.Counter CACHE_MISSES = Metrics.counter("passengers.cache.misses");
+	private static final Metrics.Timer LOAD_RANGE = Metrics.timer("passengers.loadRange");
+	private static final Metrics.Counter RANGE_ROWS = Metrics.counter("passengers.loadRange.records");
+	private static final Metrics.Counter LOAD_SHARDS = Metrics.counter("passengers.load.shards");
+	private final boolean offHeap;
+	//the forecasts cached so far; loads fill a copy and publish it as a new version, so readers
+	//never need a lock, except that lazy windows and point lookups add to the current version
+	//in place and so read it under the lock
+	private volatile Data data;
 	private String path;
-	
+	private SQLiteConnectionPool pool;
+	private boolean queryOnly = true;
+	private String journalMode;
+	private int loadParallelism = Runtime.getRuntime().availableProcessors();
+	private int shardRows = SHARD_ROWS;
+	//set when forecasts are paged in from the database on a cache miss
+	private volatile boolean lazy;
+	private int windowDays;
+	private HashSet<Long> loadedWindows = new HashSet<Long>();
+	//set when cache misses are answered by a single row lookup instead
+	private volatile boolean pointLookups;
+
 	public PassengerNumbersDAO() {
-		
-	}
-	private Connection connect() throws IOException, NullPointerException, DataLoadingException {
-        // SQLite connection string
-        String url = "jdbc:sqlite:"+path;
-                Connection conn = null;
-        try {
-            conn = DriverManager.getConnection(url);
-            
-        }
-        catch(NullPointerException ex) {
-        	System.out.println(ex.getMessage());
-        }
-        catch (SQLException e) {
-            System.out.println(e.getMessage());
-        }
-        
-   
-        return conn;
-    }
+		this(false);
+	}
+
+	/**
+	 * @param offHeap true to hold the forecast cache in direct memory outside the Java heap
+	 */
+	public PassengerNumbersDAO(boolean offHeap) {
+		this.offHeap = offHeap;
+		data = new Data(0, new PassengerForecastStore(offHeap));
+	}
+
+	/**
+	 * Sets the pragmas applied to each new database connection
+	 * Connections already open keep their settings until the database path changes or close() is called
+	 * @param queryOnly true (the default) to open connections that cannot write to the database
+	 * @param journalMode one of SQLite's journal modes, DELETE, TRUNCATE, PERSIST, MEMORY, WAL or OFF,
+	 * or null (the default) to leave the database's own
+	 * @throws IllegalArgumentException if the journal mode is not one of those
+	 */
+	public synchronized void setConnectionPragmas(boolean queryOnly, String journalMode) {
+		this.journalMode = SQLiteConnectionPool.checkJournalMode(journalMode);
+		this.queryOnly = queryOnly;
+	}
+
+	/**
+	 * @param parallelism the number of threads loadPassengerNumbersData(Path) reads with, by
+	 * default one per processor
+	 */
+	public synchronized void setLoadParallelism(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		}
+		loadParallelism = parallelism;
+	}
+
+	/**
+	 * Sets the fewest rows a shard of a parallel load reads, so tests can shard small tables
+	 */
+	synchronized void setShardRows(int rows) {
+		if (rows < 1) {
+			throw new IllegalArgumentException("Shard rows must be at least 1: " + rows);
+		}
+		shardRows = rows;
+	}
+
+	/**
+	 * Points the DAO at a database, reusing the open connections if it is the same one
+	 */
+	private synchronized void setPath(Path p) {
+		String newPath = p.toAbsolutePath().toString();
+		if (!newPath.equals(path)) {
+			close();
+			path = newPath;
+		}
+	}
+
+	/**
+	 * Borrows a pooled connection to the current database
+	 * @throws DataLoadingException if the connection cannot be opened
+	 */
+	private synchronized PooledConnection connect() throws DataLoadingException {
+		if (path == null) {
+			throw new DataLoadingException(new IllegalStateException("No passenger numbers database has been set"));
+		}
+		if (pool == null) {
+			pool = new SQLiteConnectionPool(path, queryOnly, journalMode, MAX_IDLE_CONNECTIONS);
+		}
+		try {
+			return pool.borrow();
+		}
+		catch (SQLException e) {
+			throw new DataLoadingException(e);
+		}
+	}
+
+	/**
+	 * Closes every pooled connection to the database
+	 * The DAO can still be used afterwards, new connections are opened as needed
+	 */
+	public synchronized void close() {
+		if (pool != null) {
+			pool.close();
+			pool = null;
+		}
+	}
 
 	/**
 	 * Returns the number of passenger number entries in the cache
+	 * Read under the lock, as lazy windows and point lookups add to the cache in place
 	 * @return the number of passenger number entries in the cache
 	 */
 	@Override
-	public int getNumberOfEntries() {
-		int numberOfEntries;
-		numberOfEntries = 0;
-		for (@SuppressWarnings("unused") int v:passengerNumbers.values()) {
-			numberOfEntries++;
-		}
-		return numberOfEntries;
+	public synchronized int getNumberOfEntries() {
+		return data.store.size();
+	}
+
+	/**
+	 * A number that changes whenever forecasts are loaded or reset, so callers can tell if
+	 * anything they worked out from earlier results is still current
+	 * Forecasts cached by point lookups do not change it, as they only add what the database already said
+	 */
+	@Override
+	public long getDataVersion() {
+		return data.version;
 	}
 
 
@@ -64,49 +177,562 @@ public class PassengerNumbersDAO implements IPassengerNumbersDAO {
 	 */
 	@Override
 	public int getPassengerNumbersFor(int flightNumber, LocalDate date) {
-		int passengerTotal = -1;
-		String hashKey = (date.toString() + " " + String.valueOf(flightNumber));
-		if(passengerNumbers.containsKey(hashKey)) {
-			passengerTotal = passengerNumbers.get(hashKey);
+		long start = Metrics.start();
+		try {
+			return lookUpCached(flightNumber, date);
+		}
+		finally {
+			GET_PASSENGER_NUMBERS_FOR.record(start);
 		}
-		return passengerTotal;
+	}
+
+	/**
+	 * getPassengerNumbersFor() for many flights at once, such as all of a day's, filling the
+	 * caller's array instead of answering one call at a time
+	 * Cached forecasts are all read from the same version of the cache; misses are then filled
+	 * in one by one through lazy loading or point lookups when either is on
+	 * @param flightNumbers the flight number of each flight
+	 * @param epochDays the date of each flight, as LocalDate.toEpochDay()
+	 * @param passengers filled in with the forecast for each flight, or -1 where there is none
+	 * @throws IllegalArgumentException if the arrays are not all the same length
+	 */
+	public void getPassengerNumbersFor(int[] flightNumbers, long[] epochDays, int[] passengers) {
+		if (epochDays.length != flightNumbers.length || passengers.length != flightNumbers.length) {
+			throw new IllegalArgumentException("Expected " + flightNumbers.length + " dates and results but got "
+					+ epochDays.length + " and " + passengers.length);
+		}
+		long start = Metrics.start();
+		try {
+			if (pointLookups || lazy) {
+				//lazy windows and point lookups add to the cache in place, so it can only be read under the lock
+				for (int i = 0; i < flightNumbers.length; i++) {
+					passengers[i] = lookUpCached(flightNumbers[i], LocalDate.ofEpochDay(epochDays[i]));
+				}
+				return;
+			}
+			PassengerForecastStore store = data.store;
+			int hits = 0;
+			int misses = 0;
+			for (int i = 0; i < flightNumbers.length; i++) {
+				int forecast = store.get(flightNumbers[i], epochDays[i]);
+				if (forecast >= 0) {
+					hits++;
+				}
+				else {
+					misses++;
+				}
+				passengers[i] = forecast;
+			}
+			CACHE_HITS.add(hits);
+			CACHE_MISSES.add(misses);
+		}
+		finally {
+			GET_PASSENGER_NUMBERS_FOR_BATCH.record(start);
+		}
+	}
+
+	/**
+	 * Answers getPassengerNumbersFor() from the cache, filling it from the database on a miss
+	 * when lazy loading or point lookups are on
+	 */
+	private int lookUpCached(int flightNumber, LocalDate date) {
+		if (pointLookups) {
+			return lookUpPoint(flightNumber, date);
+		}
+		if (lazy) {
+			return lookUpLazy(flightNumber, date);
+		}
+		int passengers = data.store.get(flightNumber, date.toEpochDay());
+		(passengers >= 0 ? CACHE_HITS : CACHE_MISSES).increment();
+		return passengers;
+	}
+
+	/**
+	 * Answers a lookup from the cache, paging in the window around the date on a miss
+	 * Windows are added to the cache in place, so it is only read under the lock
+	 */
+	private synchronized int lookUpLazy(int flightNumber, LocalDate date) {
+		int passengers = data.store.get(flightNumber, date.toEpochDay());
+		if (passengers >= 0) {
+			CACHE_HITS.increment();
+			return passengers;
+		}
+		CACHE_MISSES.increment();
+		if (lazy && pageIn(date)) {
+			passengers = data.store.get(flightNumber, date.toEpochDay());
+		}
+		return passengers;
+	}
+
+	/**
+	 * Answers a lookup from the cache, or from the database on a miss
+	 * The cache is changed in place, so it is only read under the lock, but the database is
+	 * asked outside it so lookups on the other pooled connections carry on meanwhile
+	 * Forecasts the database does not have are remembered too, until the next load or reset
+	 */
+	private int lookUpPoint(int flightNumber, LocalDate date) {
+		long epochDay = date.toEpochDay();
+		Data asked;
+		synchronized (this) {
+			int passengers = data.store.get(flightNumber, epochDay);
+			if (passengers >= 0 || data.absent.get(flightNumber, epochDay) >= 0) {
+				CACHE_HITS.increment();
+				return passengers;
+			}
+			asked = data;
+		}
+		CACHE_MISSES.increment();
+		int passengers;
+		try {
+			passengers = lookUp(flightNumber, date);
+		}
+		catch (DataLoadingException e) {
+			LOG.log(Level.WARNING, "Could not look up passenger numbers", e.getCause());
+			return -1;
+		}
+		synchronized (this) {
+			//a load meanwhile may have read more than the database said then, so only add to the version asked
+			if (data == asked) {
+				PassengerForecastStore cache = passengers >= 0 ? asked.store : asked.absent;
+				if (cache.size() < PassengerForecastStore.MAX_SIZE) {
+					cache.put(flightNumber, epochDay, Math.max(passengers, 0));
+				}
+			}
+		}
+		return passengers;
 	}
 
 	/**
 	 * Loads the passenger numbers data from the specified SQLite database into a cache for future calls to getPassengerNumbersFor()
 	 * Multiple calls to this method are additive, but flight numbers/dates previously cached will be overwritten
-	 * The cache can be reset by calling reset() 
+	 * The cache can be reset by calling reset()
+	 * A big table is read in shards of rows by several threads at once, see setLoadParallelism()
 	 * @param p The path of the SQLite database to load data from
 	 * @throws DataLoadingException If there is a problem loading from the database
 	 */
 	@Override
-	public void loadPassengerNumbersData(Path p) throws DataLoadingException{
-		path =p.toAbsolutePath().toString();
-		
-		String sql = "SELECT * FROM PassengerNumbers";
-        
-        try (Connection conn = this.connect();
-             Statement stmt  = conn.createStatement();
-             ResultSet rs    = stmt.executeQuery(sql)){
-            
-            // loop through the result set
-            while (rs.next()) {
-                String hashKey = (rs.getString("Date") + " " + String.valueOf(rs.getInt("FlightNumber")));
-                passengerNumbers.put(hashKey, rs.getInt("Passengers"));
-            }
-        } catch (Exception e) {
-            System.out.println(e.getMessage());
-            throw new DataLoadingException();
-        }
+	public synchronized void loadPassengerNumbersData(Path p) throws DataLoadingException{
+		long start = Metrics.start();
+		setPath(p);
+		int rows = 0;
+
+		String sql = "SELECT Date, FlightNumber, Passengers FROM PassengerNumbers";
+		PooledConnection conn = connect();
+		PassengerForecastStore next = data.store.copy();
+		try {
+			long[] starts = loadParallelism == 1 ? null : shardStarts(conn, loadParallelism, shardRows);
+			if (starts != null) {
+				rows = loadShards(starts, next);
+			}
+			else {
+				try (Statement stmt = conn.connection.createStatement()) {
+					stmt.setFetchSize(FETCH_SIZE);
+					try (ResultSet rs = stmt.executeQuery(sql)) {
+						rows = addRows(rs, next);
+					}
+				}
+			}
+		}
+		catch (Exception e) {
+			pool.discard(conn);
+			throw new DataLoadingException(e);
+		}
+		finally {
+			//rows read before any error are kept, as they always have been
+			publish(next);
+			Metrics.recordLoad("passengers", p, start, rows);
+		}
+		pool.release(conn);
+	}
+
+	/**
+	 * Splits the table into shards of at least shardRows rows, at most SHARDS_PER_THREAD for each
+	 * thread, each holding as near the same number of rows as the rowids allow
+	 * @return the first rowid of each shard in order, or null if the table is too small to be
+	 * worth splitting or has no rowids
+	 */
+	private static long[] shardStarts(PooledConnection conn, int parallelism, int shardRows) {
+		try (Statement stmt = conn.connection.createStatement(); ResultSet count = stmt.executeQuery(COUNT_SQL)) {
+			long rows = count.next() ? count.getLong(1) : 0;
+			int shards = (int) Math.min(rows / shardRows, (long) parallelism * SHARDS_PER_THREAD);
+			if (shards < 2) {
+				return null;
+			}
+			try (PreparedStatement starts = conn.connection.prepareStatement(SHARD_STARTS_SQL)) {
+				starts.setInt(1, shards);
+				long[] first = new long[shards];
+				int found = 0;
+				try (ResultSet rs = starts.executeQuery()) {
+					while (rs.next() && found < shards) {
+						first[found++] = rs.getLong(1);
+					}
+				}
+				return found < 2 ? null : Arrays.copyOf(first, found);
+			}
+		}
+		catch (SQLException e) {
+			//a WITHOUT ROWID table, or no table at all, which the plain query then reports
+			return null;
+		}
+	}
 
+	/**
+	 * Reads the shards starting at each of the given rowids, each on its own read-only connection,
+	 * and adds them to the store in rowid order, as one query would, so where a flight and date
+	 * appear twice the later row still wins
+	 * Each shard ends just before the next one starts and the last runs to the end of the table,
+	 * so the rowids between them are never subtracted and cannot overflow
+	 * At most two shards per thread are held in memory at once
+	 * @return the number of rows added
+	 * @throws DataLoadingException after adding every row before the first that could not be read
+	 */
+	private int loadShards(long[] starts, PassengerForecastStore store) throws DataLoadingException {
+		ForkJoinPool threads = new ForkJoinPool(loadParallelism);
+		ArrayDeque<ForkJoinTask<ShardRows>> inFlight = new ArrayDeque<ForkJoinTask<ShardRows>>();
+		int rows = 0;
+		try {
+			int next = 0;
+			while (next < starts.length || !inFlight.isEmpty()) {
+				if (next < starts.length && inFlight.size() < loadParallelism * 2) {
+					long last = next + 1 < starts.length ? starts[next + 1] - 1 : Long.MAX_VALUE;
+					inFlight.add(threads.submit(new Shard(pool, starts[next], last, shardRows)));
+					LOAD_SHARDS.increment();
+					next++;
+					continue;
+				}
+				ShardRows shard = inFlight.poll().join();
+				rows += shard.addTo(store);
+				if (shard.error != null) {
+					throw new DataLoadingException(shard.error);
+				}
+			}
+			return rows;
+		}
+		finally {
+			for (ForkJoinTask<ShardRows> task : inFlight) {
+				task.cancel(false);
+			}
+			threads.shutdownNow();
+		}
+	}
+
+	/**
+	 * Loads only the passenger numbers for flights between two dates (inclusive) into the cache
+	 * Multiple calls are additive in the same way as loadPassengerNumbersData(Path)
+	 * @param p The path of the SQLite database to load data from
+	 * @param from the first date to load
+	 * @param to the last date to load
+	 * @throws DataLoadingException If there is a problem loading from the database
+	 */
+	public synchronized void loadPassengerNumbersData(Path p, LocalDate from, LocalDate to) throws DataLoadingException {
+		setPath(p);
+		PassengerForecastStore next = data.store.copy();
+		try {
+			loadRange(from, to, next);
+		}
+		finally {
+			publish(next);
+		}
+	}
+
+	/**
+	 * Switches the DAO to lazy loading: nothing is read up front, and on a cache miss
+	 * getPassengerNumbersFor() reads the whole window of days around the requested date
+	 * Each window is only read from the database once until reset() is called
+	 * @param p The path of the SQLite database to page data in from
+	 * @param windowDays how many days of forecasts to read on each miss
+	 */
+	public synchronized void setLazyLoading(Path p, int windowDays) {
+		if (windowDays < 1) {
+			throw new IllegalArgumentException("windowDays must be at least 1");
+		}
+		setPath(p);
+		this.windowDays = windowDays;
+		loadedWindows.clear();
+		pointLookups = false;
+		//windows are added in place, so give them a store no reader from before the switch still holds
+		data = new Data(data.version, data.store.copy());
+		lazy = true;
+	}
+
+	/**
+	 * Switches the DAO to point lookups: nothing is read up front, and on a cache miss
+	 * getPassengerNumbersFor() asks the database for just that flight and date
+	 * using a prepared statement kept open on a pooled connection
+	 * @param p The path of the SQLite database to look forecasts up in
+	 */
+	public synchronized void setPointLookups(Path p) {
+		setPath(p);
+		lazy = false;
+		pointLookups = true;
+		//forget what any earlier database had no forecast for, and as lookups are added in place,
+		//give them a store no reader from before the switch still holds
+		data = new Data(data.version, data.store.copy());
+	}
+
+	/**
+	 * Reads the window containing a date if it has not been read already
+	 * The rows are added to the current cache in place rather than to a copy, so paging in a
+	 * window costs only its own rows however much is cached already; a new version is still
+	 * published, sharing the same store
+	 * A window that fails to load is tried again on the next miss in it
+	 * @return true if any new data was read
+	 */
+	private boolean pageIn(LocalDate date) {
+		long window = Math.floorDiv(date.toEpochDay(), windowDays);
+		if (loadedWindows.contains(window)) {
+			return false;
+		}
+		LocalDate from = LocalDate.ofEpochDay(window * windowDays);
+		try {
+			loadRange(from, from.plusDays(windowDays - 1), data.store);
+			loadedWindows.add(window);
+			return true;
+		}
+		catch (DataLoadingException e) {
+			LOG.log(Level.WARNING, "Could not load passenger numbers from " + from, e.getCause());
+			return false;
+		}
+		finally {
+			//rows read before any error are kept, as they are for other loads
+			publish(data.store);
+		}
+	}
+
+	/**
+	 * Looks up a single forecast straight from the database on a pooled connection
+	 * @return the forecast, or -1 if there is none
+	 * @throws DataLoadingException if the database cannot be read
+	 */
+	private int lookUp(int flightNumber, LocalDate date) throws DataLoadingException {
+		SQLiteConnectionPool connections;
+		PooledConnection conn;
+		synchronized (this) {
+			conn = connect();
+			connections = pool;
+		}
+		try {
+			PreparedStatement stmt = conn.pointLookup();
+			stmt.setInt(1, flightNumber);
+			stmt.setString(2, date.toString());
+			int passengers = -1;
+			try (ResultSet rs = stmt.executeQuery()) {
+				if (rs.next()) {
+					passengers = rs.getInt(1);
+				}
+			}
+			connections.release(conn);
+			return passengers;
+		}
+		catch (SQLException e) {
+			connections.discard(conn);
+			throw new DataLoadingException(e);
+		}
+	}
+
+	/**
+	 * Runs the date bounded query and adds every row to a store
+	 * Dates are stored as ISO text, so BETWEEN compares them in date order
+	 * @throws DataLoadingException after adding every row before the first that could not be read
+	 */
+	private void loadRange(LocalDate from, LocalDate to, PassengerForecastStore into) throws DataLoadingException {
+		long start = Metrics.start();
+		PooledConnection conn = connect();
+		try (PreparedStatement stmt = conn.connection.prepareStatement(RANGE_SQL)) {
+			stmt.setString(1, from.toString());
+			stmt.setString(2, to.toString());
+			stmt.setFetchSize(FETCH_SIZE);
+			try (ResultSet rs = stmt.executeQuery()) {
+				RANGE_ROWS.add(addRows(rs, into));
+			}
+		}
+		catch (Exception e) {
+			pool.discard(conn);
+			throw new DataLoadingException(e);
+		}
+		finally {
+			LOAD_RANGE.record(start);
+		}
+		pool.release(conn);
+	}
+
+	/**
+	 * Adds every (Date, FlightNumber, Passengers) row of a result set to a store
+	 * @return the number of rows added
+	 */
+	private static int addRows(ResultSet rs, PassengerForecastStore store) throws SQLException {
+		int rows = 0;
+		while (rs.next()) {
+			store.put(rs.getInt(2), epochDay(rs.getString(1)), rs.getInt(3));
+			rows++;
+		}
+		return rows;
+	}
+
+	/**
+	 * The same as LocalDate.parse(date).toEpochDay(), but working a plain yyyy-MM-dd date out
+	 * straight from its digits rather than through the general purpose parser
+	 */
+	static long epochDay(String date) {
+		if (date == null || date.length() != 10 || date.charAt(4) != '-' || date.charAt(7) != '-') {
+			return LocalDate.parse(date).toEpochDay();
+		}
+		int year = digits(date, 0, 4);
+		int month = digits(date, 5, 7);
+		int day = digits(date, 8, 10);
+		if (year < 0 || month < 1 || month > 12 || day < 1 || day > 28) {
+			//anything that might not be a real date is checked properly
+			return LocalDate.parse(date).toEpochDay();
+		}
+		//count from 1 March so the leap day falls at the end of the year
+		if (month <= 2) {
+			year--;
+		}
+		int era = Math.floorDiv(year, 400);
+		int yearOfEra = year - era * 400;
+		int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+		//days from 1 March 0000 to 1 January 1970
+		return era * 146097L + dayOfEra - 719468;
+	}
+
+	/**
+	 * The number in a run of ASCII digits, or -1 if any character is not a digit
+	 */
+	private static int digits(String text, int from, int to) {
+		int value = 0;
+		for (int i = from; i < to; i++) {
+			int digit = text.charAt(i) - '0';
+			if (digit < 0 || digit > 9) {
+				return -1;
+			}
+			value = value * 10 + digit;
+		}
+		return value;
+	}
+
+	private void publish(PassengerForecastStore store) {
+		data = new Data(data.version + 1, store);
+	}
+
+	/**
+	 * The forecasts loaded so far, used when saving a snapshot
+	 */
+	synchronized PassengerForecastStore getStore() {
+		return data.store;
+	}
+
+	/**
+	 * Replaces every loaded forecast with those in the store in one step, used when restoring a snapshot
+	 * This also turns lazy loading and point lookups off
+	 */
+	synchronized void restore(PassengerForecastStore store) {
+		lazy = false;
+		pointLookups = false;
+		loadedWindows.clear();
+		publish(store);
 	}
 
 	/**
 	 * Removes all data from the DAO, ready to start again if needed
+	 * This also turns lazy loading and point lookups off
 	 */
 	@Override
-	public void reset() {
-		passengerNumbers.clear();
+	public synchronized void reset() {
+		lazy = false;
+		pointLookups = false;
+		loadedWindows.clear();
+		publish(new PassengerForecastStore(offHeap));
+	}
+
+	/**
+	 * Reads the rows with rowids from first to last on a read-only connection of its own
+	 */
+	private static class Shard implements Callable<ShardRows> {
+		private final SQLiteConnectionPool pool;
+		private final long first;
+		private final long last;
+		private final int expectedRows;
+
+		Shard(SQLiteConnectionPool pool, long first, long last, int expectedRows) {
+			this.pool = pool;
+			this.first = first;
+			this.last = last;
+			this.expectedRows = expectedRows;
+		}
+
+		@Override
+		public ShardRows call() {
+			ShardRows rows = new ShardRows(expectedRows);
+			try (Connection conn = pool.openReadOnly(); PreparedStatement stmt = conn.prepareStatement(SHARD_SQL)) {
+				stmt.setLong(1, first);
+				stmt.setLong(2, last);
+				stmt.setFetchSize(FETCH_SIZE);
+				try (ResultSet rs = stmt.executeQuery()) {
+					while (rs.next()) {
+						rows.add(rs.getInt(2), epochDay(rs.getString(1)), rs.getInt(3));
+					}
+				}
+			}
+			catch (Exception e) {
+				rows.error = e;
+			}
+			return rows;
+		}
+	}
+
+	/**
+	 * The rows of one shard in rowid order, up to the first that could not be read
+	 */
+	private static class ShardRows {
+		private int[] flightNumbers;
+		private long[] epochDays;
+		private int[] passengers;
+		private int size;
+		Exception error;
+
+		ShardRows(int capacity) {
+			flightNumbers = new int[Math.max(capacity, 16)];
+			epochDays = new long[flightNumbers.length];
+			passengers = new int[flightNumbers.length];
+		}
+
+		void add(int flightNumber, long epochDay, int forecast) {
+			if (size == flightNumbers.length) {
+				flightNumbers = Arrays.copyOf(flightNumbers, size * 2);
+				epochDays = Arrays.copyOf(epochDays, size * 2);
+				passengers = Arrays.copyOf(passengers, size * 2);
+			}
+			flightNumbers[size] = flightNumber;
+			epochDays[size] = epochDay;
+			passengers[size] = forecast;
+			size++;
+		}
+
+		/**
+		 * @return the number of rows added
+		 */
+		int addTo(PassengerForecastStore store) {
+			for (int i = 0; i < size; i++) {
+				store.put(flightNumbers[i], epochDays[i], passengers[i]);
+			}
+			return size;
+		}
+	}
+
+	/**
+	 * One version of the cached forecasts
+	 */
+	private static class Data {
+		final long version;
+		final PassengerForecastStore store;
+		//the flights and dates point lookups found no forecast for, each held with a forecast of 0
+		final PassengerForecastStore absent = new PassengerForecastStore(false);
+
+		Data(long version, PassengerForecastStore store) {
+			this.version = version;
+			this.store = store;
+		}
 	}
 
 }
@@ -0,0 +1,167 @@
+package solution;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The records added, updated and removed between two versions of a data file
+ * Records are grouped by a key such as an aircraft's tail code, which need not be unique:
+ * crew are keyed by name and home base, and namesakes on one base are common. Within a key,
+ * records whose fingerprint, a string of all their fields, is unchanged are matched up first;
+ * what is left is paired in file order as updates, and any surplus is added or removed
+ *
+ * Changes are applied to a DAO's records by fingerprint, one record per change, so editing
+ * or removing one of several records with the same key leaves the others as they were.
+ * Records with the same fingerprint are identical, so it does not matter which one is taken
+ * @param <T> the kind of record
+ */
+class RecordDiff<T> {
+	private final Function<T, String> fingerprint;
+	private final List<T> added = new ArrayList<T>();
+	//old and new versions of updated records, in the same order
+	private final List<T> updatedFrom = new ArrayList<T>();
+	private final List<T> updated = new ArrayList<T>();
+	//old versions of removed records
+	private final List<T> removed = new ArrayList<T>();
+
+	private RecordDiff(Function<T, String> fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Compares the records of a file before and after it changed, both in file order
+	 */
+	static <T> RecordDiff<T> between(List<T> before, List<T> after, Function<T, String> key,
+			Function<T, String> fingerprint) {
+		RecordDiff<T> diff = new RecordDiff<T>(fingerprint);
+		LinkedHashMap<String, List<T>> oldByKey = grouped(before, key);
+		LinkedHashMap<String, List<T>> newByKey = grouped(after, key);
+		for (Map.Entry<String, List<T>> entry : newByKey.entrySet()) {
+			List<T> olds = oldByKey.remove(entry.getKey());
+			if (olds == null) {
+				diff.added.addAll(entry.getValue());
+				continue;
+			}
+			List<T> news = new ArrayList<T>();
+			for (T record : entry.getValue()) {
+				if (!removeSame(olds, record, fingerprint)) {
+					news.add(record);
+				}
+			}
+			int paired = Math.min(olds.size(), news.size());
+			diff.updatedFrom.addAll(olds.subList(0, paired));
+			diff.updated.addAll(news.subList(0, paired));
+			diff.added.addAll(news.subList(paired, news.size()));
+			diff.removed.addAll(olds.subList(paired, olds.size()));
+		}
+		for (List<T> olds : oldByKey.values()) {
+			diff.removed.addAll(olds);
+		}
+		return diff;
+	}
+
+	/**
+	 * Groups records by key, keeping the file order of the keys and of the records in each group
+	 */
+	private static <T> LinkedHashMap<String, List<T>> grouped(List<T> records, Function<T, String> key) {
+		LinkedHashMap<String, List<T>> grouped = new LinkedHashMap<String, List<T>>();
+		for (T record : records) {
+			String k = key.apply(record);
+			List<T> group = grouped.get(k);
+			if (group == null) {
+				group = new ArrayList<T>(1);
+				grouped.put(k, group);
+			}
+			group.add(record);
+		}
+		return grouped;
+	}
+
+	/**
+	 * Removes the first record with the same fingerprint as another
+	 * @return false if there was none
+	 */
+	private static <T> boolean removeSame(List<T> records, T record, Function<T, String> fingerprint) {
+		String print = fingerprint.apply(record);
+		for (int i = 0; i < records.size(); i++) {
+			if (fingerprint.apply(records.get(i)).equals(print)) {
+				records.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	boolean isEmpty() {
+		return added.isEmpty() && updated.isEmpty() && removed.isEmpty();
+	}
+
+	List<T> getAdded() {
+		return Collections.unmodifiableList(added);
+	}
+
+	List<T> getUpdated() {
+		return Collections.unmodifiableList(updated);
+	}
+
+	List<T> getRemoved() {
+		return Collections.unmodifiableList(removed);
+	}
+
+	/**
+	 * Returns a copy of the loaded records with the changes made: each updated record replaces
+	 * the first loaded record matching its old version, each removed record takes out the first
+	 * loaded record matching it, and added ones go on the end
+	 */
+	ArrayList<T> applyTo(List<T> records) {
+		HashMap<String, ArrayDeque<T>> replacements = new HashMap<String, ArrayDeque<T>>();
+		for (int i = 0; i < updated.size(); i++) {
+			String print = fingerprint.apply(updatedFrom.get(i));
+			ArrayDeque<T> queue = replacements.get(print);
+			if (queue == null) {
+				queue = new ArrayDeque<T>(1);
+				replacements.put(print, queue);
+			}
+			queue.add(updated.get(i));
+		}
+		HashMap<String, Integer> removals = new HashMap<String, Integer>();
+		for (T record : removed) {
+			removals.merge(fingerprint.apply(record), 1, Integer::sum);
+		}
+
+		ArrayList<T> changed = new ArrayList<T>(records.size() + added.size());
+		for (T record : records) {
+			if (replacements.isEmpty() && removals.isEmpty()) {
+				changed.add(record);
+				continue;
+			}
+			String print = fingerprint.apply(record);
+			Integer left = removals.get(print);
+			if (left != null) {
+				if (left == 1) {
+					removals.remove(print);
+				}
+				else {
+					removals.put(print, left - 1);
+				}
+				continue;
+			}
+			ArrayDeque<T> queue = replacements.get(print);
+			if (queue != null) {
+				changed.add(queue.poll());
+				if (queue.isEmpty()) {
+					replacements.remove(print);
+				}
+				continue;
+			}
+			changed.add(record);
+		}
+		changed.addAll(added);
+		return changed;
+	}
+}
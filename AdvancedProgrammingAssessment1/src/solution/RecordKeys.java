@@ -0,0 +1,48 @@
+package solution;
+import baseclasses.Aircraft;
+import baseclasses.Crew;
+import baseclasses.Pilot;
+import baseclasses.Route;
+
+/**
+ * Keys and fingerprints for the records in the data files, used to match up two readings of a file
+ * A key groups the readings of what is probably the same record, and a fingerprint holds every
+ * field, so two records with the same fingerprint cannot be told apart
+ * Crew keys are not unique, two crew members can share a name and a home base; code that needs
+ * to tell people apart should hold on to the Crew itself
+ */
+final class RecordKeys {
+	private RecordKeys() {
+	}
+
+	static String aircraftKey(Aircraft a) {
+		return a.getTailCode();
+	}
+
+	static String aircraftFingerprint(Aircraft a) {
+		return a.getTailCode() + '|' + a.getTypeCode() + '|' + a.getManufacturer() + '|' + a.getModel() + '|'
+				+ a.getSeats() + '|' + a.getCabinCrewRequired() + '|' + a.getStartingPosition();
+	}
+
+	static String crewKey(Crew c) {
+		return c.getForename() + ' ' + c.getSurname() + '@' + c.getHomeBase();
+	}
+
+	static String crewFingerprint(Crew c) {
+		String fingerprint = crewKey(c) + '|' + c.getTypeRatings();
+		if (c instanceof Pilot) {
+			fingerprint += "|" + ((Pilot) c).getRank();
+		}
+		return fingerprint;
+	}
+
+	static String routeKey(Route r) {
+		return r.getFlightNumber() + "/" + r.getDayOfWeek();
+	}
+
+	static String routeFingerprint(Route r) {
+		return routeKey(r) + '|' + r.getDepartureAirport() + '|' + r.getDepartureAirportCode() + '|'
+				+ r.getArrivalAirport() + '|' + r.getArrivalAirportCode() + '|' + r.getDuration() + '|'
+				+ r.getDepartureTime() + '|' + r.getArrivalTime();
+	}
+}
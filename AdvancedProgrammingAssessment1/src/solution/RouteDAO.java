@@ -3,47 +3,79 @@ import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalTime;
+import java.time.DayOfWeek;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import baseclasses.DataLoadingException;
 import baseclasses.IRouteDAO;
 import baseclasses.Route;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.DocumentBuilder;
-import org.w3c.dom.Document;
-import org.w3c.dom.NodeList;
-import org.w3c.dom.Node;
-import org.w3c.dom.Element;
-import java.io.File;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
 
 /**
  * The RouteDAO parses XML files of route information, each route specifying
  * where the airline flies from, to, and on which day of the week
  */
-public class RouteDAO implements IRouteDAO {
-	private List <Route> routeList;
+public class RouteDAO implements IRouteDAO, DataVersioned {
+	private static final List<String> ROUTE_FIELDS = Arrays.asList("FlightNumber", "DayOfWeek", "DepartureAirport",
+			"DepartureAirportCode", "ArrivalAirport", "ArrivalAirportCode", "Duration", "DepartureTime", "ArrivalTime");
+	private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+	private static final Logger LOG = Logger.getLogger(RouteDAO.class.getName());
+	//each day's name as findRoutesbyDate() has always matched it, the "E" pattern in the default locale
+	private static final String[] DAY_NAMES = new String[DayOfWeek.values().length];
+	private static final Metrics.Timer FIND_ROUTES_BY_DAY_OF_WEEK = Metrics.timer("routes.findRoutesByDayOfWeek");
+	private static final Metrics.Timer FIND_ROUTES_BY_DEPARTURE_AIRPORT_AND_DAY = Metrics.timer("routes.findRoutesByDepartureAirportAndDay");
+	private static final Metrics.Timer FIND_ROUTES_DEPARTING_AIRPORT = Metrics.timer("routes.findRoutesDepartingAirport");
+	private static final Metrics.Timer FIND_ROUTESBY_DATE = Metrics.timer("routes.findRoutesbyDate");
+	private static final Metrics.Timer FIND_ROUTES_BETWEEN = Metrics.timer("routes.findRoutesBetween");
+	static {
+		DateTimeFormatter dayName = DateTimeFormatter.ofPattern("E");
+		for (DayOfWeek day : DayOfWeek.values()) {
+			DAY_NAMES[day.ordinal()] = dayName.format(LocalDate.of(2020, 1, 6).plusDays(day.ordinal()));
+		}
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+	//everything loaded so far, replaced as a whole by each load or reset so readers never need a lock
+	private volatile Data data = new Data(0, new ArrayList<Route>());
 	public RouteDAO() {
-	routeList = new ArrayList <Route>();
+	}
+	
+	/**
+	 * A number that changes whenever routes are loaded or reset, so callers can tell if
+	 * anything they worked out from earlier results is still current
+	 */
+	@Override
+	public long getDataVersion() {
+		return data.version;
 	}
 	
 	/**
 	 * Finds all flights that depart on the specified day of the week
-	 * @param dayOfWeek A three letter day of the week, e.g. "Tue"
+	 * @param dayOfWeek A three letter day of the week, e.g. "Tue", spelt exactly as in the route file
 	 * @return A list of all routes that depart on this day
 	 */
 	@Override
 	public List<Route> findRoutesByDayOfWeek(String dayOfWeek) {
-		List<Route> routes = new ArrayList <Route>();
-		for(Route routeitem:routeList) 
-		{	
-			if(routeitem.getDayOfWeek().equals(dayOfWeek)) {
-				routes.add(routeitem);
-			}
+		long start = Metrics.start();
+		try {
+			return data.onDay(dayOfWeek).view;
+		}
+		finally {
+			FIND_ROUTES_BY_DAY_OF_WEEK.record(start);
 		}
-		return routes;
 	}
 
 	/**
@@ -54,15 +86,14 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public List<Route> findRoutesByDepartureAirportAndDay(String airportCode, String dayOfWeek) {
-		List<Route> routes = new ArrayList <Route>();
-		for(Route routeitem:routeList)
-		{
-			if(routeitem.getDepartureAirportCode().equals(airportCode) && routeitem.getDayOfWeek().equals(dayOfWeek))
-			{
-				routes.add(routeitem);
-			}
+		long start = Metrics.start();
+		try {
+			Data data = this.data;
+			return data.onDay(dayOfWeek).departing(data.codes.find(airportCode));
+		}
+		finally {
+			FIND_ROUTES_BY_DEPARTURE_AIRPORT_AND_DAY.record(start);
 		}
-		return routes;
 	}
 
 	/**
@@ -72,14 +103,18 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public List<Route> findRoutesDepartingAirport(String airportCode) {
-		List<Route> routes = new ArrayList <Route>();
-		for(Route routeitem:routeList) 
-		{	
-			if(routeitem.getDepartureAirportCode().equals(airportCode)) {
-				routes.add(routeitem);
+		long start = Metrics.start();
+		try {
+			Data data = this.data;
+			List<Route> routes = data.routesByDepartureAirport.get(data.codes.find(airportCode));
+			if (routes == null) {
+				return Collections.emptyList();
 			}
+			return routes;
+		}
+		finally {
+			FIND_ROUTES_DEPARTING_AIRPORT.record(start);
 		}
-		return routes;
 	}
 
 	/**
@@ -89,16 +124,46 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public List<Route> findRoutesbyDate(LocalDate date) {
-		ArrayList<Route> routes = new ArrayList<Route>();
-		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("E");
-		String departureDate = formatter.format(date);
-		for(Route routeitem:routeList)
-		{
-			if (routeitem.getDayOfWeek().equals(departureDate)) {
-				routes.add(routeitem);
+		long start = Metrics.start();
+		try {
+			return data.routesByDate[date.getDayOfWeek().ordinal()].view;
+		}
+		finally {
+			FIND_ROUTESBY_DATE.record(start);
+		}
+	}
+
+	/**
+	 * findRoutesbyDate() for every date between two dates (inclusive), all answered from the same
+	 * loaded routes
+	 * The routes for every date are added to one buffer, which the caller can clear and reuse
+	 * @param into the buffer to add each date's routes to, in date order
+	 * @param ends filled in with the size of the buffer once each date's routes have been added,
+	 * so it needs a place for every date
+	 * @return the number of dates, or 0 if endDate is before startDate
+	 * @throws IllegalArgumentException if ends has fewer places than there are dates
+	 */
+	public int findRoutesBetween(LocalDate startDate, LocalDate endDate, List<? super Route> into, int[] ends) {
+		long days = endDate.toEpochDay() - startDate.toEpochDay() + 1;
+		if (days <= 0) {
+			return 0;
+		}
+		if (days > ends.length) {
+			throw new IllegalArgumentException("Expected places for " + days + " dates but got " + ends.length);
+		}
+		long start = Metrics.start();
+		try {
+			Data current = data;
+			int day = startDate.getDayOfWeek().ordinal();
+			for (int i = 0; i < days; i++) {
+				into.addAll(current.routesByDate[(day + i) % current.routesByDate.length].view);
+				ends[i] = into.size();
 			}
+			return (int) days;
+		}
+		finally {
+			FIND_ROUTES_BETWEEN.record(start);
 		}
-		return routes;
 	}
 
 	/**
@@ -108,7 +173,7 @@ public class RouteDAO implements IRouteDAO {
 	@Override
 	public List<Route> getAllRoutes() {
 		// TODO Auto-generated method stub
-		return routeList;
+		return data.routes;
 	}
 
 	/**
@@ -118,7 +183,7 @@ public class RouteDAO implements IRouteDAO {
 	@Override
 	public int getNumberOfRoutes() {
 		// TODO Auto-generated method stub
-		return routeList.size();
+		return data.routes.size();
 	}
 
 	/**
@@ -129,49 +194,211 @@ public class RouteDAO implements IRouteDAO {
 	 */
 	@Override
 	public void loadRouteData(Path arg0) throws DataLoadingException {
-		
+		long start = Metrics.start();
 		try {
-			NodeList enlist = null; 
-			File fXmlFile = new File(arg0.toAbsolutePath().toString());
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder dBuilder;
-			dBuilder = dbFactory.newDocumentBuilder();
-			Document doc = dBuilder.parse(fXmlFile);
-			doc.getDocumentElement().normalize();
-			enlist = doc.getElementsByTagName("Route");
-		
-			for (int i = 0; i<enlist.getLength(); i++) {
-				Node endnode = enlist.item(i);
-				
-				if (endnode.getNodeType()==Node.ELEMENT_NODE) {
-					Route route = new Route();
-					Element element = (Element) endnode;
-					route.setFlightNumber(Integer.parseInt(element.getElementsByTagName("FlightNumber").item(0).getTextContent()));
-					route.setDayOfWeek((element.getElementsByTagName("DayOfWeek").item(0).getTextContent()));
-					route.setDepartureAirport((element.getElementsByTagName("DepartureAirport").item(0).getTextContent()));
-					route.setDepartureAirportCode((element.getElementsByTagName("DepartureAirportCode").item(0).getTextContent()));
-					route.setArrivalAirport((element.getElementsByTagName("ArrivalAirport").item(0).getTextContent()));
-					route.setArrivalAirportCode((element.getElementsByTagName("ArrivalAirportCode").item(0).getTextContent()));
-					route.setDuration((Duration.parse(element.getElementsByTagName("Duration").item(0).getTextContent())));
-					route.setDepartureTime(LocalTime.parse(element.getElementsByTagName("DepartureTime").item(0).getTextContent()));
-					route.setArrivalTime(LocalTime.parse(element.getElementsByTagName("ArrivalTime").item(0).getTextContent()));
-					routeList.add(route);
+			//routes are only added once the whole file has parsed, as with the old DOM loader
+			List<Route> routes = readRouteFile(arg0);
+			addAll(routes);
+			Metrics.recordLoad("routes", arg0, start, routes.size());
+		}
+		catch (Exception  ex) {
+			LOG.log(Level.WARNING, "Could not load routes from " + arg0, ex);
+			throw new DataLoadingException(ex);
+		}
+	}
+
+	/**
+	 * Parses a whole routes file without loading it, also used by DataWatcher to diff a changed file
+	 */
+	static List<Route> readRouteFile(Path p) throws IOException, XMLStreamException {
+		try (InputStream in = Files.newInputStream(p)) {
+			XMLStreamReader xml = XML_INPUT_FACTORY.createXMLStreamReader(in);
+			try {
+				return readRoutes(xml);
+			}
+			finally {
+				xml.close();
+			}
+		}
+	}
+
+	/**
+	 * Reads every Route element in one forward pass over the document
+	 * Only the route currently being read is held besides the routes already finished
+	 */
+	private static List<Route> readRoutes(XMLStreamReader xml) throws XMLStreamException {
+		List<Route> routes = new ArrayList<Route>();
+		Route route = null;
+		int fieldsSeen = 0;
+		while (xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if (name.equals("Route")) {
+					route = new Route();
+					fieldsSeen = 0;
+				}
+				else if (route != null) {
+					int field = ROUTE_FIELDS.indexOf(name);
+					if (field >= 0) {
+						setField(route, name, xml.getElementText().trim());
+						fieldsSeen |= 1 << field;
+					}
 				}
 			}
+			else if (event == XMLStreamConstants.END_ELEMENT && route != null && xml.getLocalName().equals("Route")) {
+				if (fieldsSeen != (1 << ROUTE_FIELDS.size()) - 1) {
+					throw new XMLStreamException("Route is missing one or more of " + ROUTE_FIELDS, xml.getLocation());
+				}
+				routes.add(route);
+				route = null;
+			}
+		}
+		return routes;
+	}
+
+	/**
+	 * Adds routes as though they had been loaded
+	 * A new version holding the old and new routes is built and then published in one step
+	 */
+	synchronized void addAll(List<Route> routes) {
+		if (routes.isEmpty()) {
+			return;
+		}
+		ArrayList<Route> all = new ArrayList<Route>(data.routes);
+		all.addAll(routes);
+		data = new Data(data.version + 1, all);
+	}
+
+	/**
+	 * Makes the changes found in a reloaded file, publishing them as one new version
+	 * The new version is indexed from scratch, as after a load, not patched from the old one
+	 */
+	synchronized void apply(RecordDiff<Route> diff) {
+		data = new Data(data.version + 1, diff.applyTo(data.routes));
+	}
+
+	/**
+	 * Replaces every loaded route in one step, used when restoring a snapshot
+	 */
+	synchronized void restore(List<Route> routes) {
+		data = new Data(data.version + 1, new ArrayList<Route>(routes));
+	}
+
+	/**
+	 * Converts a three letter day code such as "Tue" to the DayOfWeek findRoutesbyDate() finds it on
+	 * @return the day, or null if the code is not exactly the name of a day of the week
+	 */
+	static DayOfWeek parseDayOfWeek(String dayOfWeek) {
+		for (DayOfWeek day : DayOfWeek.values()) {
+			if (DAY_NAMES[day.ordinal()].equals(dayOfWeek)) {
+				return day;
+			}
+		}
+		return null;
+	}
+
+	private static void setField(Route route, String name, String text) {
+		switch (name) {
+		case "FlightNumber": route.setFlightNumber(Integer.parseInt(text)); break;
+		case "DayOfWeek": route.setDayOfWeek(CodeDictionary.canonical(text)); break;
+		case "DepartureAirport": route.setDepartureAirport(text); break;
+		case "DepartureAirportCode": route.setDepartureAirportCode(CodeDictionary.canonical(text)); break;
+		case "ArrivalAirport": route.setArrivalAirport(text); break;
+		case "ArrivalAirportCode": route.setArrivalAirportCode(CodeDictionary.canonical(text)); break;
+		case "Duration": route.setDuration(Duration.parse(text)); break;
+		case "DepartureTime": route.setDepartureTime(LocalTime.parse(text)); break;
+		case "ArrivalTime": route.setArrivalTime(LocalTime.parse(text)); break;
+		default: break;
 		}
-		catch (Exception  ex) {
-		System.out.println(ex.getMessage());
-		throw new DataLoadingException(ex);
 	}
-}
 
 	/**
 	 * Unloads all of the crew currently loaded, ready to start again if needed
 	 */
 	@Override
-	public void reset() {
-		routeList.clear();
+	public synchronized void reset() {
+		data = new Data(data.version + 1, new ArrayList<Route>());
 
 	}
 
+	/**
+	 * One version of the loaded routes, bucketed by day code with each day having its own
+	 * departure airport index, never changed once built
+	 * Day codes and departure airports are indexed by their ID in the version's own CodeDictionary,
+	 * and match exactly; routesByDate holds the bucket for each day's name in DAY_NAMES
+	 */
+	private static class Data {
+		private static final DayRoutes NO_ROUTES = new DayRoutes();
+		final long version;
+		final List<Route> routes;
+		final CodeDictionary codes = new CodeDictionary();
+		final CodeMap<DayRoutes> routesByDay = new CodeMap<DayRoutes>();
+		final DayRoutes[] routesByDate = new DayRoutes[DayOfWeek.values().length];
+		final CodeMap<List<Route>> routesByDepartureAirport = new CodeMap<List<Route>>();
+
+		Data(long version, ArrayList<Route> routes) {
+			this.version = version;
+			this.routes = Collections.unmodifiableList(routes);
+			CodeMap<List<Route>> departing = new CodeMap<List<Route>>();
+			for (Route route : routes) {
+				DayRoutes.addTo(codes, departing, routesByDepartureAirport, route);
+				int day = codes.id(route.getDayOfWeek());
+				DayRoutes onDay = routesByDay.get(day);
+				if (onDay == null && day != CodeDictionary.NONE) {
+					onDay = new DayRoutes();
+					routesByDay.put(day, onDay);
+				}
+				if (onDay != null) {
+					onDay.add(codes, route);
+				}
+			}
+			for (int i = 0; i < routesByDate.length; i++) {
+				routesByDate[i] = onDay(DAY_NAMES[i]);
+			}
+		}
+
+		DayRoutes onDay(String dayOfWeek) {
+			DayRoutes onDay = routesByDay.get(codes.find(dayOfWeek));
+			return onDay == null ? NO_ROUTES : onDay;
+		}
+	}
+
+	/**
+	 * The routes flying on one day of the week, with read-only views created as they are built
+	 */
+	private static class DayRoutes {
+		final ArrayList<Route> routes = new ArrayList<Route>();
+		final List<Route> view = Collections.unmodifiableList(routes);
+		final CodeMap<List<Route>> byDepartureAirport = new CodeMap<List<Route>>();
+		final CodeMap<List<Route>> byDepartureAirportView = new CodeMap<List<Route>>();
+
+		void add(CodeDictionary codes, Route route) {
+			routes.add(route);
+			addTo(codes, byDepartureAirport, byDepartureAirportView, route);
+		}
+
+		/**
+		 * Adds a route to a departure airport index and creates the read-only view of any new entry
+		 */
+		static void addTo(CodeDictionary codes, CodeMap<List<Route>> index, CodeMap<List<Route>> views, Route route) {
+			int airportCode = codes.id(route.getDepartureAirportCode());
+			List<Route> departing = index.get(airportCode);
+			if (departing == null) {
+				departing = new ArrayList<Route>();
+				index.put(airportCode, departing);
+				views.put(airportCode, Collections.unmodifiableList(departing));
+			}
+			departing.add(route);
+		}
+
+		List<Route> departing(int airportCode) {
+			List<Route> departing = byDepartureAirportView.get(airportCode);
+			if (departing == null) {
+				return Collections.emptyList();
+			}
+			return departing;
+		}
+	}
+
 }
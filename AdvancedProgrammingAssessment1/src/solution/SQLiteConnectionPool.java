@@ -0,0 +1,171 @@
+package solution;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small pool of long-lived connections to one SQLite database
+ * Connections are opened on demand, handed back after use and kept open for the next caller,
+ * and each one caches its own prepared statement for single forecast lookups
+ * Bulk readers can instead open read-only connections of their own outside the pool
+ */
+class SQLiteConnectionPool {
+	static final String POINT_LOOKUP_SQL = "SELECT Passengers FROM PassengerNumbers WHERE FlightNumber = ? AND Date = ?";
+	//the driver's name for the sqlite3_open_v2() flags, where 1 is SQLITE_OPEN_READONLY
+	private static final String OPEN_MODE = "open_mode";
+	private static final String READ_ONLY = "1";
+	//the journal modes SQLite knows, the only text ever put into the journal_mode pragma
+	private static final Set<String> JOURNAL_MODES = new HashSet<String>(
+			Arrays.asList("DELETE", "TRUNCATE", "PERSIST", "MEMORY", "WAL", "OFF"));
+
+	private final String url;
+	private final boolean queryOnly;
+	private final String journalMode;
+	private final int maxIdle;
+	private final ConcurrentLinkedQueue<PooledConnection> idle = new ConcurrentLinkedQueue<PooledConnection>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+	private volatile boolean closed;
+
+	/**
+	 * @param path the absolute path of the database file
+	 * @param queryOnly true to stop any connection from writing to the database
+	 * @param journalMode a journal mode such as "WAL" to set on each connection, or null to leave the database's own
+	 * @param maxIdle how many unused connections to keep open
+	 */
+	SQLiteConnectionPool(String path, boolean queryOnly, String journalMode, int maxIdle) {
+		this.url = "jdbc:sqlite:" + path;
+		this.queryOnly = queryOnly;
+		this.journalMode = checkJournalMode(journalMode);
+		this.maxIdle = maxIdle;
+	}
+
+	/**
+	 * Returns a journal mode in upper case, or null for none
+	 * @throws IllegalArgumentException if it is not one of SQLite's journal modes
+	 */
+	static String checkJournalMode(String journalMode) {
+		if (journalMode == null) {
+			return null;
+		}
+		String mode = journalMode.trim().toUpperCase(Locale.ROOT);
+		if (!JOURNAL_MODES.contains(mode)) {
+			throw new IllegalArgumentException("Unknown journal mode: " + journalMode + ", expected one of " + JOURNAL_MODES);
+		}
+		return mode;
+	}
+
+	/**
+	 * Returns an idle connection, or opens a new one if none are free
+	 * @throws SQLException if a new connection cannot be opened
+	 */
+	PooledConnection borrow() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool for " + url + " has been closed");
+		}
+		PooledConnection c = idle.poll();
+		if (c != null) {
+			idleCount.decrementAndGet();
+			return c;
+		}
+		Connection conn = DriverManager.getConnection(url);
+		try (Statement stmt = conn.createStatement()) {
+			if (journalMode != null) {
+				stmt.execute("PRAGMA journal_mode=" + journalMode);
+			}
+			if (queryOnly) {
+				stmt.execute("PRAGMA query_only=ON");
+			}
+		}
+		catch (SQLException e) {
+			conn.close();
+			throw e;
+		}
+		return new PooledConnection(conn);
+	}
+
+	/**
+	 * Opens a connection that is not pooled and that SQLite opens read-only, whatever the pool's
+	 * own pragmas are, for a caller that reads in bulk and closes it when done
+	 * @throws SQLException if the connection cannot be opened or the pool has been closed
+	 */
+	Connection openReadOnly() throws SQLException {
+		if (closed) {
+			throw new SQLException("Connection pool for " + url + " has been closed");
+		}
+		Properties properties = new Properties();
+		properties.setProperty(OPEN_MODE, READ_ONLY);
+		return DriverManager.getConnection(url, properties);
+	}
+
+	/**
+	 * Hands a healthy connection back to the pool
+	 */
+	void release(PooledConnection c) {
+		if (!closed && idleCount.incrementAndGet() <= maxIdle) {
+			idle.offer(c);
+			//close() may have drained the queue between the check and the offer
+			if (closed && idle.remove(c)) {
+				c.close();
+			}
+			return;
+		}
+		idleCount.decrementAndGet();
+		c.close();
+	}
+
+	/**
+	 * Closes a connection that failed rather than handing it to the next caller
+	 */
+	void discard(PooledConnection c) {
+		c.close();
+	}
+
+	/**
+	 * Closes every idle connection; connections still borrowed are closed when released
+	 */
+	void close() {
+		closed = true;
+		PooledConnection c;
+		while ((c = idle.poll()) != null) {
+			idleCount.decrementAndGet();
+			c.close();
+		}
+	}
+
+	/**
+	 * A pooled connection together with its cached point lookup statement
+	 */
+	static class PooledConnection {
+		final Connection connection;
+		private PreparedStatement pointLookup;
+
+		PooledConnection(Connection connection) {
+			this.connection = connection;
+		}
+
+		PreparedStatement pointLookup() throws SQLException {
+			if (pointLookup == null) {
+				pointLookup = connection.prepareStatement(POINT_LOOKUP_SQL);
+			}
+			return pointLookup;
+		}
+
+		void close() {
+			try {
+				connection.close();
+			}
+			catch (SQLException e) {
+				//nothing more can be done with a connection that will not close
+			}
+		}
+	}
+}
@@ -1,33 +1,877 @@
 package solution;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
 import baseclasses.IAircraftDAO;
 import baseclasses.ICrewDAO;
 import baseclasses.IPassengerNumbersDAO;
 import baseclasses.IRouteDAO;
 import baseclasses.IScheduler;
+import baseclasses.Pilot;
 import baseclasses.Schedule;
 import baseclasses.SchedulerRunner;
 
+/**
+ * The Scheduler splits the requested date range into one work unit per day, works out the
+ * candidate aircraft and crew for every flight of each day in parallel on a ForkJoinPool,
+ * and then merges the days into a single Schedule in date order
+ * Every scheduler shares one pool unless it is given its own, so no call pays to start threads
+ * It remembers what it allocated in each schedule it makes, so repairSchedule() can later
+ * plan just the flights hit by a disruption, and keeps the candidates it works out for as long
+ * as the aircraft and crew are unchanged
+ * Several schedules can be made on one scheduler at once; each call keeps its own state, and
+ * stop() stops all of them
+ */
 public class Scheduler implements IScheduler {
+	private static final Logger LOG = Logger.getLogger(Scheduler.class.getName());
+	private static final Metrics.Timer GENERATE = Metrics.timer("scheduler.generate");
+	private static final Metrics.Timer REPAIR = Metrics.timer("scheduler.repair");
+	private static final Metrics.Timer PLAN_DAY = Metrics.timer("scheduler.planDay");
+	private static final Metrics.Timer COMMIT_DAY = Metrics.timer("scheduler.commitDay");
+	private static final Metrics.Counter ALLOCATED = Metrics.counter("scheduler.allocated");
+	private static final Metrics.Counter UNALLOCATED = Metrics.counter("scheduler.unallocated");
+	private static final Metrics.Counter FAILED = Metrics.counter("scheduler.failedAllocations");
+	//the flights a repair kept as they were, and those it planned again
+	private static final Metrics.Counter REPAIR_REPLAYED = Metrics.counter("scheduler.repair.replayed");
+	private static final Metrics.Counter REPAIR_REPLANNED = Metrics.counter("scheduler.repair.replanned");
+	//its threads are daemons, so it never keeps the JVM running
+	private static final ForkJoinPool SHARED_WORKERS = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	private volatile SchedulerRunner schedulerRunner;
+	//the generateSchedule() and repairSchedule() calls in progress, for stop()
+	private final Set<Run> runs = Collections.newSetFromMap(new ConcurrentHashMap<Run, Boolean>());
+	//the allocations behind each schedule this scheduler made, dropped once the schedule is
+	private final Map<Schedule, Plan> plans = Collections.synchronizedMap(new WeakHashMap<Schedule, Plan>());
+	private final CandidateCache candidateCache;
+	private final ForkJoinPool workers;
 
-	@Override
-	public Schedule generateSchedule(IAircraftDAO arg0, ICrewDAO arg1, IRouteDAO arg2, IPassengerNumbersDAO arg3,
-			LocalDate arg4, LocalDate arg5) {
-		// TODO Auto-generated method stub
-		return null;
+	public Scheduler() {
+		this(CandidateCache.DEFAULT_MAX_WEIGHT);
+	}
+
+	/**
+	 * @param candidateCacheSize the most aircraft and crew to keep in cached candidate lists
+	 * between flights and schedules, 0 to work every list out afresh
+	 */
+	public Scheduler(int candidateCacheSize) {
+		this(candidateCacheSize, SHARED_WORKERS);
+	}
+
+	/**
+	 * @param candidateCacheSize as for Scheduler(int)
+	 * @param workers the pool to plan days on, which the scheduler never shuts down
+	 */
+	public Scheduler(int candidateCacheSize, ForkJoinPool workers) {
+		if (workers == null) {
+			throw new IllegalArgumentException("workers must not be null");
+		}
+		candidateCache = new CandidateCache(candidateCacheSize);
+		this.workers = workers;
 	}
 
+	/**
+	 * Generates a schedule for every flight between the two dates (inclusive)
+	 * Candidate lookups run in parallel per day, allocations are committed one day at a time
+	 * so that conflicts across midnight are still caught by the Schedule itself
+	 * @return the schedule, which may be incomplete if stop() was called or a flight could not be staffed
+	 */
 	@Override
-	public void setSchedulerRunner(SchedulerRunner arg0) {
-		// TODO Auto-generated method stub
+	public Schedule generateSchedule(IAircraftDAO aircraftDAO, ICrewDAO crewDAO, IRouteDAO routeDAO,
+			IPassengerNumbersDAO passengerNumbersDAO, LocalDate startDate, LocalDate endDate) {
+		long start = Metrics.start();
+		Run run = new Run();
+		runs.add(run);
+		Schedule schedule = new Schedule(routeDAO, startDate, endDate);
+		Plan plan = new Plan(startDate, endDate);
+
+		//split the remaining flights into one work unit per departure day
+		Map<LocalDate, List<FlightInfo>> flightsByDay = new TreeMap<LocalDate, List<FlightInfo>>();
+		for (FlightInfo flight : schedule.getRemainingAllocations()) {
+			LocalDate day = flight.getDepartureDateTime().toLocalDate();
+			List<FlightInfo> flights = flightsByDay.get(day);
+			if (flights == null) {
+				flights = new ArrayList<FlightInfo>();
+				flightsByDay.put(day, flights);
+			}
+			flights.add(flight);
+		}
+
+		FeasibilityIndex index = candidateCache.index(aircraftDAO, crewDAO);
+		FeasibilityIndex.Bookings bookings = index.newBookings();
+		try {
+			List<ForkJoinTask<List<FlightCandidates>>> days = new ArrayList<ForkJoinTask<List<FlightCandidates>>>();
+			for (List<FlightInfo> flights : flightsByDay.values()) {
+				days.add(run.submit(workers, new DayPlanner(run, flights, index, passengerNumbersDAO)));
+			}
+
+			//merge the days back in date order, each day sees everything committed before it
+			for (ForkJoinTask<List<FlightCandidates>> day : days) {
+				if (run.stopped) {
+					break;
+				}
+				List<FlightCandidates> candidates;
+				try {
+					candidates = day.join();
+				}
+				catch (CancellationException ce) {
+					break;
+				}
+				long commitStart = Metrics.start();
+				for (FlightCandidates c : candidates) {
+					if (run.stopped) {
+						break;
+					}
+					plan.add(allocate(schedule, c, bookings));
+				}
+				COMMIT_DAY.record(commitStart);
+				reportProgress(schedule);
+			}
+		}
+		finally {
+			//the pool outlives the call, so drop any days it has not planned yet
+			run.cancel();
+			runs.remove(run);
+		}
+		plans.put(schedule, plan);
+		GENERATE.record(start);
+		return schedule;
+	}
+
+	/**
+	 * The number of candidate lookups answered from the cache since this scheduler was made
+	 */
+	public long getCandidateCacheHits() {
+		return candidateCache.getHits();
+	}
+
+	/**
+	 * The number of candidate lookups that had to be worked out since this scheduler was made
+	 */
+	public long getCandidateCacheMisses() {
+		return candidateCache.getMisses();
+	}
+
+	/**
+	 * The fraction of candidate lookups answered from the cache, or 0 before the first lookup
+	 */
+	public double getCandidateCacheHitRate() {
+		return candidateCache.getHitRate();
+	}
+
+	/**
+	 * Drops the cached candidates; they are also dropped whenever the aircraft or crew change
+	 */
+	public void clearCandidateCache() {
+		candidateCache.clear();
+	}
+
+	/**
+	 * Makes a new schedule from one this scheduler made earlier, changing only what a set of
+	 * disruptions forces it to
+	 *
+	 * Allocations that are not disrupted are copied across as they were. Flights that lose
+	 * their aircraft or any crew member are planned again without the disrupted resources,
+	 * and so are the knock-on flights: later flights of any aircraft or crew member who no
+	 * longer arrives where the old schedule left them. Cancelled flights are left unallocated,
+	 * as a Schedule cannot drop a flight. Flights the old schedule could not staff stay unstaffed
+	 * @param previous a schedule returned by generateSchedule() or repairSchedule() on this scheduler;
+	 * any other schedule is planned again in full
+	 * @return a new schedule, the previous one is not changed
+	 */
+	public Schedule repairSchedule(Schedule previous, List<Disruption> disruptions, IAircraftDAO aircraftDAO,
+			ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO) {
+		Plan old = plans.get(previous);
+		if (old == null) {
+			LOG.warning("Schedule was not made by this scheduler, planning it again in full");
+			return generateSchedule(aircraftDAO, crewDAO, routeDAO, passengerNumbersDAO, previous.getStartDate(),
+					previous.getEndDate());
+		}
+		long start = Metrics.start();
+		Run run = new Run();
+		runs.add(run);
+		try {
+			return repair(run, old, disruptions, aircraftDAO, crewDAO, routeDAO, passengerNumbersDAO);
+		}
+		finally {
+			runs.remove(run);
+			REPAIR.record(start);
+		}
+	}
 
+	private Schedule repair(Run run, Plan old, List<Disruption> disruptions, IAircraftDAO aircraftDAO,
+			ICrewDAO crewDAO, IRouteDAO routeDAO, IPassengerNumbersDAO passengerNumbersDAO) {
+		Schedule schedule = new Schedule(routeDAO, old.startDate, old.endDate);
+		FeasibilityIndex index = candidateCache.index(aircraftDAO, crewDAO);
+		FeasibilityIndex.Bookings bookings = index.newBookings();
+		Map<String, FlightInfo> flights = new HashMap<String, FlightInfo>();
+		for (FlightInfo flight : schedule.getRemainingAllocations()) {
+			flights.put(flightKey(flight.getFlight().getFlightNumber(), flight.getDepartureDateTime()), flight);
+		}
+
+		//the aircraft and crew each allocation loses, to a disruption or by no longer being in place for it
+		Map<Allocation, Set<Object>> lost = new HashMap<Allocation, Set<Object>>();
+		for (Allocation a : old.allocations) {
+			Set<Object> disrupted = a.disruptedResources(disruptions);
+			if (!disrupted.isEmpty()) {
+				lost.put(a, disrupted);
+			}
+		}
+		addKnockOns(old, disruptions, lost);
+
+		Plan plan = new Plan(old.startDate, old.endDate);
+		List<FlightInfo> toPlan = new ArrayList<FlightInfo>();
+		Map<FlightInfo, Allocation> previousFor = new HashMap<FlightInfo, Allocation>();
+		for (Allocation a : old.allocations) {
+			FlightInfo flight = flights.get(a.flightKey());
+			if (flight == null || a.isCancelled(disruptions)) {
+				continue;
+			}
+			if (lost.containsKey(a) || !replay(schedule, index, flight, a, bookings)) {
+				toPlan.add(flight);
+				previousFor.put(flight, a);
+			}
+			else {
+				plan.add(a.on(flight));
+				REPAIR_REPLAYED.increment();
+			}
+		}
+
+		//only the disrupted flights go back through candidate planning, in departure order, keeping
+		//whatever they had that is still free so that only the lost aircraft or crew are replaced
+		toPlan.sort(Comparator.comparing(FlightInfo::getDepartureDateTime));
+		DayPlanner planner = new DayPlanner(run, toPlan, index, passengerNumbersDAO);
+		for (FlightInfo flight : toPlan) {
+			if (run.stopped) {
+				break;
+			}
+			Allocation before = previousFor.get(flight);
+			FlightCandidates c = planner.plan(flight).copy();
+			c.withoutDisrupted(disruptions);
+			c.preferring(before, lost.containsKey(before) ? lost.get(before) : Collections.emptySet());
+			plan.add(allocate(schedule, c, bookings));
+			REPAIR_REPLANNED.increment();
+		}
+		plans.put(schedule, plan);
+		reportProgress(schedule);
+		return schedule;
+	}
+
+	/**
+	 * Adds to the lost resources each aircraft or crew member that would start a flight somewhere
+	 * other than where it arrived last, because it no longer flies an earlier flight
+	 * Everything else on that flight keeps it, so the knock-on stays with the one resource
+	 * Resources are told apart by identity, as crew names are not unique
+	 */
+	private static void addKnockOns(Plan plan, List<Disruption> disruptions, Map<Allocation, Set<Object>> lost) {
+		Map<Object, List<Allocation>> byResource = new IdentityHashMap<Object, List<Allocation>>();
+		for (Allocation a : plan.allocations) {
+			for (Object resource : a.resources()) {
+				List<Allocation> flown = byResource.get(resource);
+				if (flown == null) {
+					flown = new ArrayList<Allocation>();
+					byResource.put(resource, flown);
+				}
+				flown.add(a);
+			}
+		}
+		for (Map.Entry<Object, List<Allocation>> entry : byResource.entrySet()) {
+			Object resource = entry.getKey();
+			//where the resource was before each flight in the old plan, and where it is now
+			String before = null;
+			String now = null;
+			for (Allocation a : entry.getValue()) {
+				boolean cancelled = a.isCancelled(disruptions);
+				Set<Object> lostHere = lost.get(a);
+				boolean flies = !cancelled && (lostHere == null || !lostHere.contains(resource));
+				if (flies && !Objects.equals(before, now)) {
+					if (lostHere == null) {
+						lostHere = identitySet();
+						lost.put(a, lostHere);
+					}
+					lostHere.add(resource);
+					flies = false;
+				}
+				before = a.arrivalAirport;
+				if (flies) {
+					now = a.arrivalAirport;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Allocates a flight to exactly what it had in an earlier schedule
+	 * The allocation is checked with problemWith() first, so a flight that can no longer have it
+	 * is left untouched for planning again rather than part allocated
+	 * @return false if that is no longer possible
+	 */
+	private static boolean replay(Schedule schedule, FeasibilityIndex index, FlightInfo flight, Allocation a,
+			FeasibilityIndex.Bookings bookings) {
+		String problem;
+		try {
+			problem = problemWith(schedule, index, flight, a.aircraft, a.captain, a.firstOfficer, a.cabinCrew);
+		}
+		catch (RuntimeException e) {
+			problem = e.toString();
+		}
+		if (problem != null) {
+			LOG.fine("Planning flight " + flightKey(flight) + " again: " + problem);
+			return false;
+		}
+		if (!commit(schedule, flight, a.aircraft, a.captain, a.firstOfficer, a.cabinCrew)) {
+			return false;
+		}
+		a.bookIn(bookings, flight);
+		return true;
+	}
+
+	private static Set<Object> identitySet() {
+		return Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	}
+
+	static String flightKey(int flightNumber, LocalDateTime departure) {
+		return flightNumber + "@" + departure;
+	}
+
+	private static String flightKey(FlightInfo flight) {
+		return flightKey(flight.getFlight().getFlightNumber(), flight.getDepartureDateTime());
+	}
+
+	/**
+	 * Sets the SchedulerRunner that progress updates are reported to
+	 * @param schedulerRunner the runner to notify, or null for none
+	 */
+	@Override
+	public void setSchedulerRunner(SchedulerRunner schedulerRunner) {
+		this.schedulerRunner = schedulerRunner;
 	}
 
+	/**
+	 * Asks every running generateSchedule() and repairSchedule() to stop as soon as possible
+	 * Workers check the flag between flights, and any days not yet started are cancelled
+	 * Calls made after this start as normal
+	 */
 	@Override
 	public void stop() {
-		// TODO Auto-generated method stub
+		for (Run run : runs) {
+			run.stop();
+		}
+	}
+
+	private void reportProgress(Schedule schedule) {
+		SchedulerRunner runner = schedulerRunner;
+		if (runner != null) {
+			runner.updateSchedule(schedule);
+		}
+	}
+
+	/**
+	 * Commits the first non-conflicting candidates for a flight to the schedule, taking those
+	 * already on the ground at the departure airport (or kept from an earlier schedule) before
+	 * any that would have to get there some other way
+	 * If the flight cannot be fully staffed it is left in the remaining allocations
+	 * @return what was allocated, or null if nothing was
+	 */
+	private static Allocation allocate(Schedule schedule, FlightCandidates c, FeasibilityIndex.Bookings bookings) {
+		FlightInfo flight = c.flight;
+		FeasibilityIndex index = bookings.index();
+		long departure = FeasibilityIndex.minuteOf(flight.getDepartureDateTime());
+		long landing = FeasibilityIndex.minuteOf(flight.getLandingDateTime());
+		BitSet here = bookings.onGround(flight.getFlight().getDepartureAirportCode(), flight.getDepartureDateTime());
+		try {
+			Aircraft aircraft = null;
+			Aircraft elsewhere = null;
+			for (int i = 0; i < c.aircraft.size(); i++) {
+				Aircraft a = c.aircraft.get(i);
+				int id = index.idAt(c.aircraft, i);
+				boolean placed = c.isPlaced(bookings, here, id, a);
+				if ((placed || elsewhere == null) && bookings.isFree(id, departure, landing) && !schedule.hasConflict(a, flight)) {
+					if (placed) {
+						aircraft = a;
+						break;
+					}
+					elsewhere = a;
+				}
+			}
+			if (aircraft == null) {
+				aircraft = elsewhere;
+			}
+			if (aircraft == null) {
+				UNALLOCATED.increment();
+				return null;
+			}
+			String typeCode = aircraft.getTypeCode();
+			List<Pilot> captains = firstFree(schedule, bookings, here, c, c.captains, typeCode, 1);
+			List<Pilot> firstOfficers = firstFree(schedule, bookings, here, c, c.firstOfficers, typeCode, 1);
+			if (captains.isEmpty() || firstOfficers.isEmpty()) {
+				UNALLOCATED.increment();
+				return null;
+			}
+			Pilot captain = captains.get(0);
+			Pilot firstOfficer = firstOfficers.get(0);
+			List<CabinCrew> cabinCrew = firstFree(schedule, bookings, here, c, c.cabinCrew, typeCode,
+					aircraft.getCabinCrewRequired());
+			if (cabinCrew.size() < aircraft.getCabinCrewRequired()) {
+				UNALLOCATED.increment();
+				return null;
+			}
+			String problem = problemWith(schedule, index, flight, aircraft, captain, firstOfficer, cabinCrew);
+			if (problem != null) {
+				LOG.warning("Could not allocate flight " + flightKey(flight) + ": " + problem);
+				UNALLOCATED.increment();
+				return null;
+			}
+			if (!commit(schedule, flight, aircraft, captain, firstOfficer, cabinCrew)) {
+				UNALLOCATED.increment();
+				return null;
+			}
+			Allocation allocation = new Allocation(flight, aircraft, captain, firstOfficer, cabinCrew);
+			allocation.bookIn(bookings, flight);
+			ALLOCATED.increment();
+			return allocation;
+		}
+		catch (RuntimeException e) {
+			//bad data, such as a flight with no times; nothing has been allocated yet
+			LOG.log(Level.WARNING, "Could not allocate flight " + flightKey(flight), e);
+			UNALLOCATED.increment();
+			return null;
+		}
+	}
+
+	/**
+	 * Why the Schedule would refuse an allocation, or null if it would take it
+	 * A Schedule cannot take back part of an allocation, so everything it checks is checked
+	 * here first and no allocate call is made for a flight that would fail half way
+	 */
+	private static String problemWith(Schedule schedule, FeasibilityIndex index, FlightInfo flight, Aircraft aircraft,
+			Pilot captain, Pilot firstOfficer, List<CabinCrew> cabinCrew) {
+		if (schedule.hasConflict(aircraft, flight)) {
+			return "aircraft " + aircraft.getTailCode() + " is already flying";
+		}
+		if (cabinCrew.size() < aircraft.getCabinCrewRequired()) {
+			return aircraft.getCabinCrewRequired() + " cabin crew needed but " + cabinCrew.size() + " given";
+		}
+		if (captain.getRank() != Pilot.Rank.CAPTAIN || firstOfficer.getRank() != Pilot.Rank.FIRST_OFFICER) {
+			return "pilots do not hold the right ranks";
+		}
+		Set<Crew> crew = Collections.newSetFromMap(new IdentityHashMap<Crew, Boolean>());
+		crew.add(captain);
+		crew.add(firstOfficer);
+		crew.addAll(cabinCrew);
+		if (crew.size() != cabinCrew.size() + 2) {
+			return "a crew member is given two places";
+		}
+		String typeCode = aircraft.getTypeCode();
+		for (Crew member : crew) {
+			if (!index.isQualified(index.idOf(member), member, typeCode)) {
+				return member.getForename() + " " + member.getSurname() + " is not rated for " + typeCode;
+			}
+			if (schedule.hasConflict(member, flight)) {
+				return member.getForename() + " " + member.getSurname() + " is already flying";
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Makes an allocation that problemWith() has passed
+	 * @return false if the Schedule refused it all the same, in which case the flight may be left
+	 * holding what was allocated before the refusal, as a Schedule has no call to take it back;
+	 * that is logged and counted as scheduler.failedAllocations
+	 */
+	private static boolean commit(Schedule schedule, FlightInfo flight, Aircraft aircraft, Pilot captain,
+			Pilot firstOfficer, List<CabinCrew> cabinCrew) {
+		try {
+			schedule.allocateAircraftTo(aircraft, flight);
+			schedule.allocateCaptainTo(captain, flight);
+			schedule.allocateFirstOfficerTo(firstOfficer, flight);
+			for (CabinCrew cc : cabinCrew) {
+				schedule.allocateCabinCrewTo(cc, flight);
+			}
+			schedule.completeAllocationFor(flight);
+			return true;
+		}
+		catch (Exception e) {
+			FAILED.increment();
+			LOG.log(Level.WARNING, "Schedule refused a checked allocation for flight " + flightKey(flight)
+					+ ", it may be left part allocated", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Up to a number of free crew qualified on a type, those on the ground at the departure
+	 * airport first and then the rest in candidate order
+	 * Candidates straight from the index are on the ground if they are in the onGround() mask,
+	 * which is walked in ID order instead of scanning the whole list for them; changed lists are
+	 * scanned, and count what they were made to keep as on the ground too
+	 */
+	private static <T extends Crew> List<T> firstFree(Schedule schedule, FeasibilityIndex.Bookings bookings, BitSet here,
+			FlightCandidates c, List<T> candidates, String typeCode, int count) {
+		FeasibilityIndex index = bookings.index();
+		FlightInfo flight = c.flight;
+		long departure = FeasibilityIndex.minuteOf(flight.getDepartureDateTime());
+		long landing = FeasibilityIndex.minuteOf(flight.getLandingDateTime());
+		List<T> free = new ArrayList<T>(count);
+		if (candidates instanceof FeasibilityIndex.Ranked) {
+			FeasibilityIndex.Ranked<T> ranked = (FeasibilityIndex.Ranked<T>) candidates;
+			BitSet placed = ranked.membersIn(here);
+			for (int id = placed.nextSetBit(0); id >= 0 && free.size() < count; id = placed.nextSetBit(id + 1)) {
+				T crew = ranked.byId(id);
+				if (index.isQualified(id, crew, typeCode) && bookings.isFree(id, departure, landing)
+						&& !schedule.hasConflict(crew, flight)) {
+					free.add(crew);
+				}
+			}
+		}
+		else {
+			for (int i = 0; i < candidates.size() && free.size() < count; i++) {
+				T crew = candidates.get(i);
+				int id = index.idAt(candidates, i);
+				if (c.isPlaced(bookings, here, id, crew) && index.isQualified(id, crew, typeCode)
+						&& bookings.isFree(id, departure, landing) && !schedule.hasConflict(crew, flight)) {
+					free.add(crew);
+				}
+			}
+		}
+		for (int i = 0; i < candidates.size() && free.size() < count; i++) {
+			T crew = candidates.get(i);
+			int id = index.idAt(candidates, i);
+			if (!free.contains(crew) && index.isQualified(id, crew, typeCode)
+					&& bookings.isFree(id, departure, landing) && !schedule.hasConflict(crew, flight)) {
+				free.add(crew);
+			}
+		}
+		return free;
+	}
+
+	/**
+	 * The state of one generateSchedule() or repairSchedule() call
+	 */
+	private static class Run {
+		volatile boolean stopped;
+		//the day planners this call submitted to the shared pool
+		private final List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+
+		synchronized <T> ForkJoinTask<T> submit(ForkJoinPool pool, Callable<T> task) {
+			ForkJoinTask<T> submitted = pool.submit(task);
+			tasks.add(submitted);
+			if (stopped) {
+				submitted.cancel(false);
+			}
+			return submitted;
+		}
+
+		void stop() {
+			stopped = true;
+			cancel();
+		}
+
+		/**
+		 * Cancels this call's day planners that have not started, those running see stopped and give up
+		 */
+		synchronized void cancel() {
+			for (ForkJoinTask<?> task : tasks) {
+				task.cancel(false);
+			}
+		}
+	}
+
+	/**
+	 * The allocations behind one schedule, in the order they were made
+	 */
+	private static class Plan {
+		final LocalDate startDate;
+		final LocalDate endDate;
+		final List<Allocation> allocations = new ArrayList<Allocation>();
+
+		Plan(LocalDate startDate, LocalDate endDate) {
+			this.startDate = startDate;
+			this.endDate = endDate;
+		}
+
+		void add(Allocation allocation) {
+			if (allocation != null) {
+				allocations.add(allocation);
+			}
+		}
+	}
+
+	/**
+	 * The aircraft and crew given to one flight
+	 * The flight is held by number and times rather than as a FlightInfo, so a plan never keeps
+	 * its schedule from being collected
+	 */
+	private static class Allocation {
+		final int flightNumber;
+		final LocalDateTime departure;
+		final LocalDateTime landing;
+		final String arrivalAirport;
+		final Aircraft aircraft;
+		final Pilot captain;
+		final Pilot firstOfficer;
+		final List<CabinCrew> cabinCrew;
+
+		Allocation(FlightInfo flight, Aircraft aircraft, Pilot captain, Pilot firstOfficer, List<CabinCrew> cabinCrew) {
+			this.flightNumber = flight.getFlight().getFlightNumber();
+			this.departure = flight.getDepartureDateTime();
+			this.landing = flight.getLandingDateTime();
+			this.arrivalAirport = flight.getFlight().getArrivalAirportCode();
+			this.aircraft = aircraft;
+			this.captain = captain;
+			this.firstOfficer = firstOfficer;
+			this.cabinCrew = cabinCrew;
+		}
+
+		/**
+		 * Marks everything allocated busy for the flight in a schedule's bookings
+		 */
+		void bookIn(FeasibilityIndex.Bookings bookings, FlightInfo flight) {
+			bookings.book(flight, aircraft);
+			bookings.book(flight, captain);
+			bookings.book(flight, firstOfficer);
+			for (CabinCrew cc : cabinCrew) {
+				bookings.book(flight, cc);
+			}
+		}
+
+		/**
+		 * The same allocation for the same flight in another schedule
+		 */
+		Allocation on(FlightInfo flight) {
+			return new Allocation(flight, aircraft, captain, firstOfficer, cabinCrew);
+		}
+
+		String flightKey() {
+			return Scheduler.flightKey(flightNumber, departure);
+		}
+
+		/**
+		 * The aircraft and each crew member
+		 */
+		List<Object> resources() {
+			List<Object> resources = new ArrayList<Object>(cabinCrew.size() + 3);
+			resources.add(aircraft);
+			resources.add(captain);
+			resources.add(firstOfficer);
+			resources.addAll(cabinCrew);
+			return resources;
+		}
+
+		boolean isCancelled(List<Disruption> disruptions) {
+			for (Disruption d : disruptions) {
+				if (d.cancels(flightNumber, departure.toLocalDate())) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * The aircraft and crew on this flight that a disruption keeps off it, held by identity
+		 */
+		Set<Object> disruptedResources(List<Disruption> disruptions) {
+			LocalDate from = departure.toLocalDate();
+			LocalDate to = landing.toLocalDate();
+			Set<Object> disrupted = identitySet();
+			for (Disruption d : disruptions) {
+				if (d.grounds(aircraft, from, to)) {
+					disrupted.add(aircraft);
+				}
+				if (d.excludes(captain, from, to)) {
+					disrupted.add(captain);
+				}
+				if (d.excludes(firstOfficer, from, to)) {
+					disrupted.add(firstOfficer);
+				}
+				for (CabinCrew cc : cabinCrew) {
+					if (d.excludes(cc, from, to)) {
+						disrupted.add(cc);
+					}
+				}
+			}
+			return disrupted;
+		}
+	}
+
+	/**
+	 * The aircraft and crew that could fly a flight, most suitable first
+	 * The lists may be shared with other flights through the candidate cache, so they are
+	 * read-only until copy() is called
+	 */
+	private static class FlightCandidates {
+		final FlightInfo flight;
+		final List<Aircraft> aircraft;
+		final List<Pilot> captains;
+		final List<Pilot> firstOfficers;
+		final List<CabinCrew> cabinCrew;
+		//what to take as if it were already at the departure airport, see preferring()
+		private final Set<Object> kept = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+		FlightCandidates(FlightInfo flight, List<Aircraft> aircraft, List<Pilot> captains, List<Pilot> firstOfficers,
+				List<CabinCrew> cabinCrew) {
+			this.flight = flight;
+			this.aircraft = aircraft;
+			this.captains = captains;
+			this.firstOfficers = firstOfficers;
+			this.cabinCrew = cabinCrew;
+		}
+
+		/**
+		 * Candidates for the same flight in lists of their own, which can be changed
+		 */
+		FlightCandidates copy() {
+			return new FlightCandidates(flight, new ArrayList<Aircraft>(aircraft), new ArrayList<Pilot>(captains),
+					new ArrayList<Pilot>(firstOfficers), new ArrayList<CabinCrew>(cabinCrew));
+		}
+
+		/**
+		 * True if a resource is on the ground at the departure airport, or kept from before
+		 */
+		boolean isPlaced(FeasibilityIndex.Bookings bookings, BitSet here, int id, Object resource) {
+			return bookings.isIn(here, id) || (!kept.isEmpty() && kept.contains(resource));
+		}
+
+		/**
+		 * Removes every aircraft and crew member a disruption keeps off this flight
+		 */
+		void withoutDisrupted(List<Disruption> disruptions) {
+			LocalDate from = flight.getDepartureDateTime().toLocalDate();
+			LocalDate to = flight.getLandingDateTime().toLocalDate();
+			for (Disruption d : disruptions) {
+				aircraft.removeIf(a -> d.grounds(a, from, to));
+				captains.removeIf(p -> d.excludes(p, from, to));
+				firstOfficers.removeIf(p -> d.excludes(p, from, to));
+				cabinCrew.removeIf(cc -> d.excludes(cc, from, to));
+			}
+		}
+
+		/**
+		 * Moves what a flight had before to the front of the candidates, apart from the lost
+		 * resources, so it keeps them wherever they are still free
+		 */
+		void preferring(Allocation previous, Set<Object> lost) {
+			if (!lost.contains(previous.aircraft)) {
+				moveToFront(aircraft, Collections.singletonList(previous.aircraft));
+			}
+			if (!lost.contains(previous.captain)) {
+				moveToFront(captains, Collections.singletonList(previous.captain));
+			}
+			if (!lost.contains(previous.firstOfficer)) {
+				moveToFront(firstOfficers, Collections.singletonList(previous.firstOfficer));
+			}
+			List<CabinCrew> keptCabinCrew = new ArrayList<CabinCrew>();
+			for (CabinCrew cc : previous.cabinCrew) {
+				if (!lost.contains(cc)) {
+					keptCabinCrew.add(cc);
+				}
+			}
+			moveToFront(cabinCrew, keptCabinCrew);
+		}
+
+		private <T> void moveToFront(List<T> candidates, List<T> preferred) {
+			candidates.removeAll(preferred);
+			candidates.addAll(0, preferred);
+			kept.addAll(preferred);
+		}
+	}
+
+	/**
+	 * Works out the candidates for every flight departing on one day
+	 * Only reads from the DAOs and the candidate cache, so any number of days can be planned at once
+	 */
+	private class DayPlanner implements Callable<List<FlightCandidates>> {
+		private final Run run;
+		private final List<FlightInfo> flights;
+		private final FeasibilityIndex index;
+		private final IPassengerNumbersDAO passengerNumbersDAO;
+
+		DayPlanner(Run run, List<FlightInfo> flights, FeasibilityIndex index, IPassengerNumbersDAO passengerNumbersDAO) {
+			this.run = run;
+			this.flights = flights;
+			this.index = index;
+			this.passengerNumbersDAO = passengerNumbersDAO;
+		}
+
+		@Override
+		public List<FlightCandidates> call() {
+			if (run.stopped) {
+				throw new CancellationException();
+			}
+			long start = Metrics.start();
+			flights.sort(Comparator.comparing(FlightInfo::getDepartureDateTime));
+			int[] passengers = forecastsFor(flights);
+			List<FlightCandidates> candidates = new ArrayList<FlightCandidates>(flights.size());
+			for (int i = 0; i < flights.size(); i++) {
+				if (run.stopped) {
+					throw new CancellationException();
+				}
+				candidates.add(plan(flights.get(i), passengers[i]));
+			}
+			PLAN_DAY.record(start);
+			return candidates;
+		}
+
+		/**
+		 * The forecast for each flight, asked for in one batch when the DAO can answer one
+		 */
+		private int[] forecastsFor(List<FlightInfo> flights) {
+			int[] passengers = new int[flights.size()];
+			if (passengerNumbersDAO instanceof PassengerNumbersDAO) {
+				int[] flightNumbers = new int[flights.size()];
+				long[] epochDays = new long[flights.size()];
+				for (int i = 0; i < flightNumbers.length; i++) {
+					FlightInfo flight = flights.get(i);
+					flightNumbers[i] = flight.getFlight().getFlightNumber();
+					epochDays[i] = flight.getDepartureDateTime().toLocalDate().toEpochDay();
+				}
+				((PassengerNumbersDAO) passengerNumbersDAO).getPassengerNumbersFor(flightNumbers, epochDays, passengers);
+			}
+			else {
+				for (int i = 0; i < passengers.length; i++) {
+					FlightInfo flight = flights.get(i);
+					passengers[i] = passengerNumbersDAO.getPassengerNumbersFor(flight.getFlight().getFlightNumber(),
+							flight.getDepartureDateTime().toLocalDate());
+				}
+			}
+			return passengers;
+		}
+
+		private FlightCandidates plan(FlightInfo flight) {
+			return plan(flight, passengerNumbersDAO.getPassengerNumbersFor(flight.getFlight().getFlightNumber(),
+					flight.getDepartureDateTime().toLocalDate()));
+		}
+
+		private FlightCandidates plan(FlightInfo flight, int passengers) {
+			String airport = flight.getFlight().getDepartureAirportCode();
 
+			//aircraft already at the airport and big enough come first, smallest first, then crew
+			//for every candidate type, home based crew first; flights alike share the same lists
+			CandidateCache.Candidates c = candidateCache.candidatesFor(index, airport, passengers);
+			return new FlightCandidates(flight, c.aircraft, c.captains, c.firstOfficers, c.cabinCrew);
+		}
 	}
 
 }
@@ -0,0 +1,56 @@
+package solution;
+import java.beans.ConstructorProperties;
+
+/**
+ * What one Metrics timer has recorded, in nanoseconds
+ * Percentiles are the upper bound of the power of two bucket they fall in, capped at the maximum
+ */
+public class TimerStats {
+	private final long count;
+	private final long totalNanos;
+	private final long p50Nanos;
+	private final long p90Nanos;
+	private final long p99Nanos;
+	private final long maxNanos;
+
+	@ConstructorProperties({"count", "totalNanos", "p50Nanos", "p90Nanos", "p99Nanos", "maxNanos"})
+	public TimerStats(long count, long totalNanos, long p50Nanos, long p90Nanos, long p99Nanos, long maxNanos) {
+		this.count = count;
+		this.totalNanos = totalNanos;
+		this.p50Nanos = p50Nanos;
+		this.p90Nanos = p90Nanos;
+		this.p99Nanos = p99Nanos;
+		this.maxNanos = maxNanos;
+	}
+
+	public long getCount() {
+		return count;
+	}
+
+	public long getTotalNanos() {
+		return totalNanos;
+	}
+
+	public long getP50Nanos() {
+		return p50Nanos;
+	}
+
+	public long getP90Nanos() {
+		return p90Nanos;
+	}
+
+	public long getP99Nanos() {
+		return p99Nanos;
+	}
+
+	public long getMaxNanos() {
+		return maxNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "count=" + count + " totalMs=" + totalNanos / 1000000 + " meanUs=" + (count == 0 ? 0 : totalNanos / count / 1000)
+				+ " p50Us<=" + p50Nanos / 1000 + " p90Us<=" + p90Nanos / 1000 + " p99Us<=" + p99Nanos / 1000
+				+ " maxUs=" + maxNanos / 1000;
+	}
+}
@@ -0,0 +1,122 @@
+package solution;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import baseclasses.Aircraft;
+
+/**
+ * Checks AircraftDAO.findBestFitAircraft() against a scan of every aircraft
+ */
+public class AircraftBestFitTest {
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	private static AircraftDAO aircraft;
+	private static List<String> airports;
+
+	@BeforeClass
+	public static void load() throws Exception {
+		DatasetGenerator generator = TestDatasets.small(23);
+		generator.setAircraft(300);
+		Path directory = folder.getRoot().toPath();
+		generator.generate(directory);
+		aircraft = new AircraftDAO();
+		aircraft.loadAircraftData(TestDatasets.files(directory).get(0));
+
+		Set<String> seen = new HashSet<String>();
+		for (Aircraft a : aircraft.getAllAircraft()) {
+			seen.add(a.getStartingPosition());
+		}
+		airports = new ArrayList<String>(seen);
+		airports.add("ZZZ");
+	}
+
+	@Test
+	public void matchesAScanOfEveryAircraft() {
+		Random random = new Random(23);
+		for (int query = 0; query < 5000; query++) {
+			String airport = airport(random);
+			int passengers = random.nextInt(400);
+			List<String> types = typeCodes(random);
+			Assert.assertSame(airport + " " + passengers + " " + types, scan(airport, passengers, types),
+					aircraft.findBestFitAircraft(airport, passengers, types));
+		}
+	}
+
+	@Test
+	public void batchMatchesSingleQueries() {
+		Random random = new Random(24);
+		for (int round = 0; round < 50; round++) {
+			List<String> types = typeCodes(random);
+			String[] startingPositions = new String[200];
+			int[] passengers = new int[startingPositions.length];
+			for (int i = 0; i < startingPositions.length; i++) {
+				startingPositions[i] = airport(random);
+				passengers[i] = random.nextInt(400);
+			}
+			Aircraft[] bestFit = new Aircraft[startingPositions.length];
+			aircraft.findBestFitAircraft(startingPositions, passengers, types, bestFit);
+			for (int i = 0; i < startingPositions.length; i++) {
+				Assert.assertSame(scan(startingPositions[i], passengers[i], types), bestFit[i]);
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void batchRejectsArraysOfDifferentLengths() {
+		aircraft.findBestFitAircraft(new String[2], new int[1], null, new Aircraft[2]);
+	}
+
+	/**
+	 * A loaded airport in upper or lower case, or one with no aircraft
+	 */
+	private static String airport(Random random) {
+		String airport = airports.get(random.nextInt(airports.size()));
+		return random.nextBoolean() ? airport.toLowerCase(Locale.ROOT) : airport;
+	}
+
+	/**
+	 * Null for any type, or a few type codes that may include one no aircraft has
+	 */
+	private static List<String> typeCodes(Random random) {
+		if (random.nextInt(4) == 0) {
+			return null;
+		}
+		List<String> types = new ArrayList<String>();
+		int count = random.nextInt(4);
+		for (int i = 0; i < count; i++) {
+			types.add(DatasetGenerator.TYPE_CODES[random.nextInt(DatasetGenerator.TYPE_CODES.length)]);
+		}
+		if (random.nextInt(5) == 0) {
+			types.add("XXXX");
+		}
+		return types;
+	}
+
+	/**
+	 * The smallest aircraft that fits, the first loaded of those the same size
+	 */
+	private static Aircraft scan(String airport, int passengers, List<String> types) {
+		Aircraft best = null;
+		for (Aircraft a : aircraft.getAllAircraft()) {
+			if (a.getStartingPosition().equalsIgnoreCase(airport) && a.getSeats() >= passengers
+					&& (types == null || types.contains(a.getTypeCode()))
+					&& (best == null || a.getSeats() < best.getSeats())) {
+				best = a;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,62 @@
+package solution;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class AircraftDAOTest {
+	private static final int FILES = 5;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void indexesManyFilesLoadedInARowOnce() throws Exception {
+		boolean metrics = Metrics.isEnabled();
+		Metrics.setEnabled(true);
+		Metrics.Counter built = Metrics.counter("aircraft.indexesBuilt");
+		long before = built.get();
+		AircraftDAO aircraft = new AircraftDAO();
+		try {
+			for (int file = 0; file < FILES; file++) {
+				aircraft.loadAircraftData(file(file));
+			}
+			Assert.assertEquals(before, built.get());
+			Assert.assertEquals(FILES, aircraft.findAircraftByStartingPosition("man").size());
+			Assert.assertEquals(FILES, aircraft.findAircraftBySeats(100).size());
+			Assert.assertEquals(3, aircraft.findAircraftByType("A320").size());
+			Assert.assertEquals(250, aircraft.findAircraftByTailCode("G-0003").getSeats());
+			Assert.assertEquals(before + 1, built.get());
+		}
+		finally {
+			Metrics.setEnabled(metrics);
+		}
+	}
+
+	@Test
+	public void queriesBetweenLoadsSeeEachVersion() throws Exception {
+		AircraftDAO aircraft = new AircraftDAO();
+		for (int file = 0; file < FILES; file++) {
+			aircraft.loadAircraftData(file(file));
+			Assert.assertEquals(file + 1, aircraft.findAircraftBySeats(0).size());
+			Assert.assertNotNull(aircraft.findAircraftByTailCode("G-000" + file));
+			Assert.assertNull(aircraft.findAircraftByTailCode("G-000" + (file + 1)));
+		}
+		aircraft.reset();
+		Assert.assertTrue(aircraft.findAircraftByStartingPosition("MAN").isEmpty());
+	}
+
+	private Path file(int file) throws IOException {
+		String type = file % 2 == 0 ? "A320" : "B737";
+		Path p = folder.newFile().toPath();
+		Files.write(p, ("TailCode,TypeCode,Manufacturer,Model,Seats,CabinCrewRequired,StartingPosition\n"
+				+ "G-000" + file + "," + type + ",Airbus,Test," + (100 + 50 * file) + ",4,MAN\n").getBytes(StandardCharsets.UTF_8));
+		return p;
+	}
+}
@@ -0,0 +1,123 @@
+package solution;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.FlightInfo;
+import baseclasses.Pilot;
+import baseclasses.Route;
+
+/**
+ * Checks FeasibilityIndex.Bookings.onGround() against a scan of every resource's flights
+ */
+public class BookingsTest {
+	private static final String[] AIRPORTS = {"MAN", "LHR", "CDG", "AMS", "DUB"};
+	private static final LocalDateTime START = TestDatasets.FIRST_DAY.atStartOfDay();
+
+	@Test
+	public void matchesAScanOfEveryFlight() {
+		Random random = new Random(22);
+		for (int round = 0; round < 20; round++) {
+			List<Aircraft> aircraft = new ArrayList<Aircraft>();
+			List<List<FlightInfo>> flights = new ArrayList<List<FlightInfo>>();
+			for (int i = 0; i < 40; i++) {
+				Aircraft a = new Aircraft();
+				a.setTailCode("G-" + i);
+				a.setSeats(random.nextInt(300));
+				a.setStartingPosition(AIRPORTS[random.nextInt(AIRPORTS.length)]);
+				aircraft.add(a);
+			}
+			FeasibilityIndex index = new FeasibilityIndex(aircraft, Collections.<Pilot>emptyList(),
+					Collections.<CabinCrew>emptyList());
+			for (int i = 0; i < aircraft.size(); i++) {
+				flights.add(flights(random, random.nextInt(12)));
+			}
+			//mostly in departure order, as the scheduler books them, but not always
+			List<Integer> order = new ArrayList<Integer>();
+			for (int i = 0; i < aircraft.size(); i++) {
+				for (int j = 0; j < flights.get(i).size(); j++) {
+					order.add(i);
+				}
+			}
+			if (random.nextBoolean()) {
+				Collections.shuffle(order, random);
+			}
+			FeasibilityIndex.Bookings bookings = index.newBookings();
+			int[] next = new int[aircraft.size()];
+			for (int i : order) {
+				List<FlightInfo> rotation = flights.get(i);
+				//each aircraft books its next flight or, half the time, any later one
+				int pick = next[i] + (random.nextBoolean() ? 0 : random.nextInt(rotation.size() - next[i]));
+				Collections.swap(rotation, next[i], pick);
+				bookings.book(rotation.get(next[i]++), aircraft.get(i));
+			}
+
+			for (int query = 0; query < 2000; query++) {
+				LocalDateTime time = START.plusMinutes(random.nextInt(4 * 24 * 60) - 60);
+				if (random.nextInt(4) == 0) {
+					//exactly on a departure or landing
+					List<FlightInfo> rotation = flights.get(random.nextInt(flights.size()));
+					if (!rotation.isEmpty()) {
+						FlightInfo f = rotation.get(random.nextInt(rotation.size()));
+						time = random.nextBoolean() ? f.getDepartureDateTime() : f.getLandingDateTime();
+					}
+				}
+				String airport = AIRPORTS[random.nextInt(AIRPORTS.length)];
+				BitSet here = bookings.onGround(airport, time);
+				for (int i = 0; i < aircraft.size(); i++) {
+					boolean expected = airport.equals(positionAt(aircraft.get(i), flights.get(i), time));
+					Assert.assertEquals(aircraft.get(i).getTailCode() + " at " + airport + " " + time, expected,
+							bookings.isIn(here, index.idOf(aircraft.get(i))));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Flights that do not overlap, some departing as the last lands, from the first day on
+	 */
+	private static List<FlightInfo> flights(Random random, int count) {
+		List<FlightInfo> flights = new ArrayList<FlightInfo>();
+		LocalDateTime time = START.plusMinutes(random.nextInt(300));
+		for (int i = 0; i < count; i++) {
+			LocalDateTime departure = time.plusMinutes(random.nextInt(3) == 0 ? 0 : random.nextInt(600));
+			Route route = new Route();
+			route.setFlightNumber(i);
+			route.setArrivalAirportCode(AIRPORTS[random.nextInt(AIRPORTS.length)]);
+			route.setDepartureTime(departure.toLocalTime());
+			route.setDuration(Duration.ofMinutes(1 + random.nextInt(300)));
+			FlightInfo flight = new FlightInfo(route, departure.toLocalDate());
+			flights.add(flight);
+			time = flight.getLandingDateTime();
+		}
+		return flights;
+	}
+
+	/**
+	 * Where the last flight to land by a time landed, taking the flights in any order
+	 */
+	private static String positionAt(Aircraft a, List<FlightInfo> flights, LocalDateTime time) {
+		String position = a.getStartingPosition();
+		LocalDateTime landed = null;
+		for (FlightInfo f : flights) {
+			if (f.getDepartureDateTime().isBefore(time) && time.isBefore(f.getLandingDateTime())) {
+				return null;
+			}
+			if (!f.getLandingDateTime().isAfter(time) && (landed == null || f.getLandingDateTime().isAfter(landed))) {
+				position = f.getFlight().getArrivalAirportCode();
+				landed = f.getLandingDateTime();
+			}
+		}
+		return position;
+	}
+}
@@ -0,0 +1,43 @@
+package solution;
+
+import java.util.Locale;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CodeDictionaryTest {
+	@Test
+	public void foldsCaseTheSameInEveryLocale() {
+		Locale before = Locale.getDefault();
+		Locale.setDefault(new Locale("tr", "TR"));
+		try {
+			CodeDictionary codes = new CodeDictionary();
+			int upper = codes.id("IST");
+			int lower = codes.id("ist");
+			Assert.assertNotEquals(upper, lower);
+			Assert.assertEquals(upper, codes.folded(lower));
+			Assert.assertEquals(upper, codes.findIgnoreCase("iSt"));
+		}
+		finally {
+			Locale.setDefault(before);
+		}
+	}
+
+	@Test
+	public void stopsGrowingAtMaxSize() {
+		CodeDictionary codes = new CodeDictionary();
+		for (int i = 0; i < CodeDictionary.MAX_SIZE; i++) {
+			codes.id("C" + i);
+		}
+		Assert.assertEquals(CodeDictionary.MAX_SIZE, codes.size());
+		Assert.assertEquals(7, codes.id("C7"));
+		try {
+			codes.id("NEW");
+			Assert.fail("Added a code past MAX_SIZE");
+		}
+		catch (IllegalStateException expected) {
+			Assert.assertEquals(CodeDictionary.MAX_SIZE, codes.size());
+			Assert.assertEquals(CodeDictionary.NONE, codes.find("NEW"));
+		}
+	}
+}
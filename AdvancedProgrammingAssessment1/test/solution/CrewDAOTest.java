@@ -0,0 +1,58 @@
+package solution;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.Pilot;
+
+public class CrewDAOTest {
+	@Test
+	public void homeBasesMatchAsTheyAlwaysHave() {
+		List<Pilot> pilots = new ArrayList<Pilot>();
+		pilots.add(crew(new Pilot(), "MAN"));
+		List<CabinCrew> cabinCrew = new ArrayList<CabinCrew>();
+		cabinCrew.add(crew(new CabinCrew(), "MAN"));
+		CrewDAO crew = new CrewDAO();
+		crew.restore(pilots, cabinCrew);
+
+		//only cabin crew by home base alone ignores case
+		Assert.assertEquals(1, crew.findCabinCrewByHomeBase("man").size());
+		Assert.assertEquals(1, crew.findCabinCrewByHomeBase("MAN").size());
+		Assert.assertTrue(crew.findCabinCrewByHomeBaseAndTypeRating("A320", "man").isEmpty());
+		Assert.assertEquals(1, crew.findCabinCrewByHomeBaseAndTypeRating("A320", "MAN").size());
+		Assert.assertTrue(crew.findPilotsByHomeBase("man").isEmpty());
+		Assert.assertEquals(1, crew.findPilotsByHomeBase("MAN").size());
+		Assert.assertTrue(crew.findPilotsByHomeBaseAndTypeRating("A320", "man").isEmpty());
+		Assert.assertEquals(1, crew.findPilotsByHomeBaseAndTypeRating("A320", "MAN").size());
+	}
+
+	@Test
+	public void reloadingNeverRunsOutOfCodes() {
+		//more distinct codes over the rounds than one dictionary can hold, but never at once
+		int perRound = CodeDictionary.MAX_SIZE / 2 + 1;
+		CrewDAO crew = new CrewDAO();
+		for (int round = 0; round < 3; round++) {
+			List<Pilot> pilots = new ArrayList<Pilot>();
+			for (int i = 0; i < perRound; i++) {
+				pilots.add(crew(new Pilot(), "B" + round + "-" + i));
+			}
+			crew.reset();
+			crew.restore(pilots, new ArrayList<CabinCrew>());
+			Assert.assertEquals(1, crew.findPilotsByHomeBase("B" + round + "-7").size());
+			Assert.assertTrue(crew.findPilotsByHomeBase("B0-7").isEmpty() == (round > 0));
+		}
+	}
+
+	private static <T extends Crew> T crew(T crew, String homeBase) {
+		crew.setForename("Ann");
+		crew.setSurname("Lee");
+		crew.setHomeBase(homeBase);
+		crew.setQualifiedFor("A320");
+		return crew;
+	}
+}
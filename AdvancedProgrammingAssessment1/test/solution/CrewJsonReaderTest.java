@@ -0,0 +1,94 @@
+package solution;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import baseclasses.CabinCrew;
+import baseclasses.DataLoadingException;
+import baseclasses.Pilot;
+
+public class CrewJsonReaderTest {
+	private static final String PILOT = "\"forename\": \"Ann\", \"surname\": \"Lee\", \"homebase\": \"MAN\", "
+			+ "\"typeRatings\": [\"A320\"], \"rank\": \"CAPTAIN\"";
+	private static final String CABIN_CREW = "\"forename\": \"Bo\", \"surname\": \"Ng\", \"homebase\": \"LHR\", "
+			+ "\"typeRatings\": []";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void readsCompleteCrew() throws IOException {
+		List<Pilot> pilots = new ArrayList<Pilot>();
+		List<CabinCrew> cabinCrew = new ArrayList<CabinCrew>();
+		new CrewJsonReader(new StringReader(crew(PILOT, CABIN_CREW) + "\n")).read(pilots::add, cabinCrew::add);
+		Assert.assertEquals(1, pilots.size());
+		Assert.assertEquals(Pilot.Rank.CAPTAIN, pilots.get(0).getRank());
+		Assert.assertEquals("MAN", pilots.get(0).getHomeBase());
+		Assert.assertEquals(1, cabinCrew.size());
+		Assert.assertEquals("Ng", cabinCrew.get(0).getSurname());
+	}
+
+	@Test
+	public void rejectsCrewMissingARequiredField() throws IOException {
+		for (String field : new String[] {"forename", "surname", "homebase", "typeRatings", "rank"}) {
+			assertRejected(crew(without(PILOT, field), CABIN_CREW));
+			if (!field.equals("rank")) {
+				assertRejected(crew(PILOT, without(CABIN_CREW, field)));
+			}
+		}
+		assertRejected(crew("", CABIN_CREW));
+		assertRejected(crew(PILOT, ""));
+	}
+
+	@Test
+	public void rejectsAnInvalidRank() throws IOException {
+		assertRejected(crew(PILOT.replace("CAPTAIN", "captain"), CABIN_CREW));
+		assertRejected(crew(PILOT.replace("CAPTAIN", "PURSER"), CABIN_CREW));
+	}
+
+	@Test
+	public void rejectsContentAfterTheCrewObject() throws IOException {
+		assertRejected(crew(PILOT, CABIN_CREW) + "}");
+		assertRejected(crew(PILOT, CABIN_CREW) + " {}");
+		assertRejected("{} x");
+	}
+
+	private void assertRejected(String json) throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.write(file, json.getBytes(StandardCharsets.UTF_8));
+		try {
+			new CrewDAO().loadCrewData(file);
+			Assert.fail("Loaded " + json);
+		}
+		catch (DataLoadingException expected) {
+			Assert.assertTrue(expected.getCause() instanceof IOException);
+		}
+	}
+
+	private static String crew(String pilot, String cabinCrew) {
+		return "{\"pilots\": [{" + pilot + "}], \"cabincrew\": [{" + cabinCrew + "}]}";
+	}
+
+	/**
+	 * The crew member's fields without the named one
+	 */
+	private static String without(String fields, String name) {
+		List<String> kept = new ArrayList<String>();
+		for (String field : fields.split(", (?=\")")) {
+			if (!field.startsWith("\"" + name + "\"")) {
+				kept.add(field);
+			}
+		}
+		return String.join(", ", kept);
+	}
+}
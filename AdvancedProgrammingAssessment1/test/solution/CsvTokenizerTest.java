@@ -0,0 +1,56 @@
+package solution;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CsvTokenizerTest {
+	@Test
+	public void countsEveryKindOfLineBreak() throws IOException {
+		for (String lineBreak : new String[] {"\n", "\r\n", "\r"}) {
+			CsvTokenizer csv = new CsvTokenizer(new StringReader("a,1" + lineBreak + lineBreak + "b,2" + lineBreak
+					+ "\"c" + lineBreak + "d\",3" + lineBreak + "e,x"));
+			int[] lines = {1, 3, 4, 6};
+			for (int line : lines) {
+				Assert.assertTrue(csv.nextRecord());
+				Assert.assertEquals(line, csv.line());
+			}
+			Assert.assertEquals("c" + lineBreak + "d", fieldOfRecord(lineBreak, 2));
+			try {
+				csv.intField(1);
+				Assert.fail("Read x as a number");
+			}
+			catch (CsvParseException e) {
+				Assert.assertEquals(6, e.getLine());
+				Assert.assertEquals(3, e.getColumn());
+			}
+			Assert.assertFalse(csv.nextRecord());
+		}
+	}
+
+	private static String fieldOfRecord(String lineBreak, int record) throws IOException {
+		CsvTokenizer csv = new CsvTokenizer(new StringReader("a,1" + lineBreak + lineBreak + "b,2" + lineBreak
+				+ "\"c" + lineBreak + "d\",3"));
+		for (int i = 0; i <= record; i++) {
+			csv.nextRecord();
+		}
+		return csv.field(0);
+	}
+
+	@Test
+	public void chunksStartOnTheLinesTheTokenizerCounts() {
+		for (String lineBreak : new String[] {"\n", "\r\n", "\r"}) {
+			String text = "a,1" + lineBreak + "\"b" + lineBreak + "c\",2" + lineBreak + "d,3" + lineBreak + "e,4";
+			CsvChunker chunker = new CsvChunker(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+			chunker.next(1);
+			Assert.assertEquals(2, chunker.line());
+			chunker.next(1);
+			Assert.assertEquals(4, chunker.line());
+			Assert.assertEquals(text.indexOf("d,3"), chunker.position());
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package solution;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.Pilot;
+import baseclasses.Route;
+
+public class DataSnapshotTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private List<Path> sources;
+	private TestDatasets.Loaded loaded;
+	private Path snapshot;
+
+	@Before
+	public void saveSnapshot() throws Exception {
+		sources = TestDatasets.write(folder.newFolder("data").toPath(), 7);
+		loaded = new TestDatasets.Loaded(sources);
+		snapshot = folder.getRoot().toPath().resolve("data.snapshot");
+		DataSnapshot.save(snapshot, sources, loaded.aircraft, loaded.crew, loaded.routes, loaded.passengerNumbers);
+	}
+
+	@Test
+	public void restoresWhatAFreshLoadReads() {
+		TestDatasets.Loaded restored = new TestDatasets.Loaded();
+		Assert.assertTrue(restore(restored));
+
+		List<Aircraft> aircraft = loaded.aircraft.getAllAircraft();
+		Assert.assertEquals(aircraft.size(), restored.aircraft.getNumberOfAircraft());
+		for (Aircraft a : aircraft) {
+			Aircraft r = restored.aircraft.findAircraftByTailCode(a.getTailCode());
+			Assert.assertEquals(describe(a), describe(r));
+		}
+		Assert.assertEquals(describeCrew(loaded.crew.getAllPilots()), describeCrew(restored.crew.getAllPilots()));
+		Assert.assertEquals(describeCrew(loaded.crew.getAllCabinCrew()), describeCrew(restored.crew.getAllCabinCrew()));
+		Assert.assertEquals(describeRoutes(loaded.routes.getAllRoutes()), describeRoutes(restored.routes.getAllRoutes()));
+
+		Assert.assertEquals(loaded.passengerNumbers.getNumberOfEntries(), restored.passengerNumbers.getNumberOfEntries());
+		for (Route route : loaded.routes.getAllRoutes()) {
+			for (int day = -1; day <= TestDatasets.DAYS; day++) {
+				LocalDate date = TestDatasets.FIRST_DAY.plusDays(day);
+				Assert.assertEquals(loaded.passengerNumbers.getPassengerNumbersFor(route.getFlightNumber(), date),
+						restored.passengerNumbers.getPassengerNumbersFor(route.getFlightNumber(), date));
+			}
+		}
+
+		//the restored DAOs are indexed as well as filled
+		for (String airport : new String[] {"AAA", "AAB", "AAC"}) {
+			Assert.assertEquals(loaded.crew.findPilotsByHomeBase(airport).size(), restored.crew.findPilotsByHomeBase(airport).size());
+			Assert.assertEquals(loaded.aircraft.findAircraftByStartingPosition(airport).size(),
+					restored.aircraft.findAircraftByStartingPosition(airport).size());
+		}
+	}
+
+	@Test
+	public void restoredForecastsCanStillBeChanged() throws Exception {
+		TestDatasets.Loaded restored = new TestDatasets.Loaded();
+		Assert.assertTrue(restore(restored));
+		int entries = restored.passengerNumbers.getNumberOfEntries();
+		restored.passengerNumbers.loadPassengerNumbersData(sources.get(3));
+		Assert.assertEquals(entries, restored.passengerNumbers.getNumberOfEntries());
+	}
+
+	@Test
+	public void rejectsAChangedPayload() throws Exception {
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			long last = channel.size() - 1;
+			ByteBuffer b = ByteBuffer.allocate(1);
+			channel.read(b, last);
+			b.put(0, (byte) (b.get(0) ^ 1));
+			b.rewind();
+			channel.write(b, last);
+		}
+		assertRejectedLeavingDAOsEmpty();
+	}
+
+	@Test
+	public void rejectsATruncatedFile() throws Exception {
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+			channel.truncate(channel.size() - 4);
+		}
+		assertRejectedLeavingDAOsEmpty();
+	}
+
+	@Test
+	public void rejectsAnotherFormatVersion() throws Exception {
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+			ByteBuffer version = ByteBuffer.allocate(4);
+			version.putInt(0, DataSnapshot.FORMAT_VERSION + 1);
+			channel.write(version, 4);
+		}
+		assertRejectedLeavingDAOsEmpty();
+	}
+
+	@Test
+	public void rejectsSnapshotOfSourcesThatHaveSinceChanged() throws Exception {
+		//the same size and modification time, as a copy that keeps timestamps would leave it
+		Path routes = sources.get(2);
+		FileTime modified = Files.getLastModifiedTime(routes);
+		byte[] bytes = Files.readAllBytes(routes);
+		int digit = lastDigit(bytes);
+		bytes[digit] = (byte) (bytes[digit] == '9' ? '8' : bytes[digit] + 1);
+		Files.write(routes, bytes);
+		Files.setLastModifiedTime(routes, modified);
+		assertRejectedLeavingDAOsEmpty();
+	}
+
+	@Test
+	public void restoresSnapshotOfSourcesOnlyTouchedSince() throws Exception {
+		Path routes = sources.get(2);
+		Files.setLastModifiedTime(routes, FileTime.fromMillis(Files.getLastModifiedTime(routes).toMillis() + 2000));
+		TestDatasets.Loaded restored = new TestDatasets.Loaded();
+		Assert.assertTrue(restore(restored));
+		Assert.assertEquals(loaded.routes.getNumberOfRoutes(), restored.routes.getNumberOfRoutes());
+	}
+
+	private static int lastDigit(byte[] bytes) {
+		for (int i = bytes.length - 1; i >= 0; i--) {
+			if (bytes[i] >= '0' && bytes[i] <= '9') {
+				return i;
+			}
+		}
+		throw new AssertionError("The file has no digits");
+	}
+
+	@Test
+	public void rejectsSnapshotOfOtherSources() throws Exception {
+		List<Path> others = TestDatasets.write(folder.newFolder("other").toPath(), 7);
+		TestDatasets.Loaded restored = new TestDatasets.Loaded();
+		Assert.assertFalse(DataSnapshot.restore(snapshot, others, restored.aircraft, restored.crew, restored.routes,
+				restored.passengerNumbers));
+	}
+
+	@Test
+	public void missingSnapshotIsNotRestored() throws Exception {
+		Files.delete(snapshot);
+		assertRejectedLeavingDAOsEmpty();
+	}
+
+	private boolean restore(TestDatasets.Loaded into) {
+		return DataSnapshot.restore(snapshot, sources, into.aircraft, into.crew, into.routes, into.passengerNumbers);
+	}
+
+	private void assertRejectedLeavingDAOsEmpty() {
+		TestDatasets.Loaded restored = new TestDatasets.Loaded();
+		Assert.assertFalse(restore(restored));
+		Assert.assertEquals(0, restored.aircraft.getNumberOfAircraft());
+		Assert.assertEquals(0, restored.crew.getNumberOfPilots());
+		Assert.assertEquals(0, restored.routes.getNumberOfRoutes());
+		Assert.assertEquals(0, restored.passengerNumbers.getNumberOfEntries());
+	}
+
+	private static String describe(Aircraft a) {
+		return a.getTailCode() + " " + a.getTypeCode() + " " + a.getManufacturer() + " " + a.getModel() + " "
+				+ a.getSeats() + " " + a.getCabinCrewRequired() + " " + a.getStartingPosition();
+	}
+
+	private static String describeCrew(List<? extends Crew> crew) {
+		StringBuilder text = new StringBuilder();
+		for (Crew c : crew) {
+			text.append(c.getForename()).append(' ').append(c.getSurname()).append(' ').append(c.getHomeBase())
+					.append(' ').append(c.getTypeRatings());
+			if (c instanceof Pilot) {
+				text.append(' ').append(((Pilot) c).getRank());
+			}
+			else if (!(c instanceof CabinCrew)) {
+				text.append(" ?");
+			}
+			text.append('\n');
+		}
+		return text.toString();
+	}
+
+	private static String describeRoutes(List<Route> routes) {
+		StringBuilder text = new StringBuilder();
+		for (Route r : routes) {
+			text.append(r.getFlightNumber()).append(' ').append(r.getDayOfWeek()).append(' ')
+					.append(r.getDepartureAirport()).append(' ').append(r.getDepartureAirportCode()).append(' ')
+					.append(r.getArrivalAirport()).append(' ').append(r.getArrivalAirportCode()).append(' ')
+					.append(r.getDuration()).append(' ').append(r.getDepartureTime()).append(' ')
+					.append(r.getArrivalTime()).append('\n');
+		}
+		return text.toString();
+	}
+}
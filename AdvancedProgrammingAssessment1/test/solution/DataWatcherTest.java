@@ -0,0 +1,151 @@
+package solution;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import baseclasses.Crew;
+
+public class DataWatcherTest {
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private Path crewFile;
+	private CrewDAO crew;
+	private DataWatcher watcher;
+	private final List<DataChangeEvent<?>> events = new ArrayList<DataChangeEvent<?>>();
+
+	/**
+	 * Two pilots and two cabin crew called Alex Smith, all based at AAA, told apart only by type ratings
+	 */
+	@Before
+	public void watchNamesakes() throws Exception {
+		crewFile = folder.getRoot().toPath().resolve("crew.json");
+		writeCrew(
+				pilot("CAPTAIN", "A320"), pilot("CAPTAIN", "B737"),
+				cabinCrew("A320"), cabinCrew("B737"));
+		crew = new CrewDAO();
+		crew.loadCrewData(crewFile);
+		watcher = new DataWatcher(new AircraftDAO(), crew, new RouteDAO());
+		watcher.watchCrew(crewFile);
+		watcher.addListener(events::add);
+	}
+
+	@After
+	public void closeWatcher() throws IOException {
+		watcher.close();
+	}
+
+	@Test
+	public void updatesOnlyTheEditedNamesake() throws Exception {
+		writeCrew(
+				pilot("CAPTAIN", "A320"), pilot("FIRST_OFFICER", "B737"),
+				cabinCrew("A320"), cabinCrew("B737", "A380"));
+		Assert.assertTrue(watcher.check(crewFile));
+
+		Assert.assertEquals(sorted("Alex Smith@AAA|[A320]|CAPTAIN", "Alex Smith@AAA|[B737]|FIRST_OFFICER"),
+				fingerprints(crew.getAllPilots()));
+		Assert.assertEquals(sorted("Alex Smith@AAA|[A320]", "Alex Smith@AAA|[B737, A380]"),
+				fingerprints(crew.getAllCabinCrew()));
+		Assert.assertEquals(2, events.size());
+		for (DataChangeEvent<?> event : events) {
+			Assert.assertEquals(1, event.getUpdated().size());
+			Assert.assertEquals(0, event.getAdded().size());
+			Assert.assertEquals(0, event.getRemoved().size());
+		}
+	}
+
+	@Test
+	public void removesOnlyTheRemovedNamesake() throws Exception {
+		writeCrew(pilot("CAPTAIN", "B737"), cabinCrew("A320"), cabinCrew("B737"));
+		Assert.assertTrue(watcher.check(crewFile));
+
+		Assert.assertEquals(sorted("Alex Smith@AAA|[B737]|CAPTAIN"), fingerprints(crew.getAllPilots()));
+		Assert.assertEquals(sorted("Alex Smith@AAA|[A320]", "Alex Smith@AAA|[B737]"), fingerprints(crew.getAllCabinCrew()));
+		Assert.assertEquals(1, events.size());
+		Assert.assertEquals(1, events.get(0).getRemoved().size());
+		Assert.assertEquals(0, events.get(0).getUpdated().size());
+	}
+
+	@Test
+	public void addsAThirdNamesake() throws Exception {
+		writeCrew(
+				pilot("CAPTAIN", "A320"), pilot("CAPTAIN", "B737"), pilot("CAPTAIN", "A320"),
+				cabinCrew("A320"), cabinCrew("B737"));
+		Assert.assertTrue(watcher.check(crewFile));
+
+		Assert.assertEquals(sorted("Alex Smith@AAA|[A320]|CAPTAIN", "Alex Smith@AAA|[A320]|CAPTAIN",
+				"Alex Smith@AAA|[B737]|CAPTAIN"), fingerprints(crew.getAllPilots()));
+		Assert.assertEquals(2, crew.getNumberOfCabinCrew());
+		Assert.assertEquals(1, events.size());
+		Assert.assertEquals(1, events.get(0).getAdded().size());
+	}
+
+	@Test
+	public void reorderingNamesakesChangesNothing() throws Exception {
+		writeCrew(
+				pilot("CAPTAIN", "B737"), pilot("CAPTAIN", "A320"),
+				cabinCrew("B737"), cabinCrew("A320"));
+		Assert.assertFalse(watcher.check(crewFile));
+		Assert.assertEquals(0, events.size());
+		Assert.assertEquals(2, crew.getNumberOfPilots());
+		Assert.assertEquals(2, crew.getNumberOfCabinCrew());
+	}
+
+	private static String pilot(String rank, String typeRating) {
+		return "{\"forename\": \"Alex\", \"surname\": \"Smith\", \"rank\": \"" + rank
+				+ "\", \"homebase\": \"AAA\", \"typeRatings\": [\"" + typeRating + "\"]}";
+	}
+
+	private static String cabinCrew(String... typeRatings) {
+		return "{\"forename\": \"Alex\", \"surname\": \"Smith\", \"homebase\": \"AAA\", \"typeRatings\": [\""
+				+ String.join("\", \"", typeRatings) + "\"]}";
+	}
+
+	/**
+	 * Writes the crew file, pilots first, and moves its modification time on so the change is seen
+	 */
+	private void writeCrew(String... records) throws IOException {
+		List<String> pilots = new ArrayList<String>();
+		List<String> cabinCrew = new ArrayList<String>();
+		for (String record : records) {
+			(record.contains("\"rank\"") ? pilots : cabinCrew).add(record);
+		}
+		String json = "{\"pilots\": [" + String.join(", ", pilots) + "], \"cabincrew\": ["
+				+ String.join(", ", cabinCrew) + "]}";
+		boolean existed = Files.exists(crewFile);
+		FileTime before = existed ? Files.getLastModifiedTime(crewFile) : null;
+		Files.write(crewFile, json.getBytes(StandardCharsets.UTF_8));
+		if (existed) {
+			Files.setLastModifiedTime(crewFile, FileTime.fromMillis(before.toMillis() + 1000));
+		}
+	}
+
+	private static List<String> fingerprints(List<? extends Crew> crew) {
+		List<String> fingerprints = new ArrayList<String>();
+		for (Crew c : crew) {
+			fingerprints.add(RecordKeys.crewFingerprint(c));
+		}
+		Collections.sort(fingerprints);
+		return fingerprints;
+	}
+
+	private static List<String> sorted(String... fingerprints) {
+		List<String> list = new ArrayList<String>();
+		Collections.addAll(list, fingerprints);
+		Collections.sort(list);
+		return list;
+	}
+}
@@ -0,0 +1,133 @@
+package solution;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import baseclasses.Route;
+
+public class PassengerNumbersDAOTest {
+	private static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 1);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void epochDayMatchesLocalDate() {
+		for (LocalDate date = LocalDate.of(1599, 12, 1); date.getYear() <= 2401; date = date.plusDays(1)) {
+			Assert.assertEquals(date.toString(), date.toEpochDay(), PassengerNumbersDAO.epochDay(date.toString()));
+		}
+		for (String date : new String[] {"0000-01-01", "0000-03-01", "0001-02-28", "1970-01-01", "9999-12-31"}) {
+			Assert.assertEquals(date, LocalDate.parse(date).toEpochDay(), PassengerNumbersDAO.epochDay(date));
+		}
+	}
+
+	@Test
+	public void epochDayRejectsWhatLocalDateRejects() {
+		String[] invalid = {"2021-02-29", "2020-02-30", "2020-04-31", "2020-13-01", "2020-00-10", "2020-01-00",
+				"2020-1-01", "2020-01-1", "2020/01/01", "20a0-01-01", "2020-0a-01", "2020-01-0a", "", "2020-01-01 "};
+		for (String date : invalid) {
+			try {
+				PassengerNumbersDAO.epochDay(date);
+				Assert.fail("Accepted " + date);
+			}
+			catch (DateTimeParseException expected) {
+				//as LocalDate.parse() throws
+			}
+		}
+		Assert.assertEquals(LocalDate.of(2020, 2, 29).toEpochDay(), PassengerNumbersDAO.epochDay("2020-02-29"));
+	}
+
+	@Test
+	public void shardedLoadOfSparseRowidsMatchesOneQuery() throws Exception {
+		Path db = folder.getRoot().toPath().resolve("sparse.db");
+		//runs of rowids with wide gaps between them, from the lowest to the highest SQLite allows,
+		//and flights and dates that repeat across the runs, so a later row has to replace an earlier one
+		long[] runStarts = {Long.MIN_VALUE, 1, 600000, 1700000, Long.MAX_VALUE - 2999};
+		try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + db.toAbsolutePath())) {
+			try (Statement stmt = conn.createStatement()) {
+				stmt.execute("CREATE TABLE PassengerNumbers (Date TEXT, FlightNumber INTEGER, Passengers INTEGER)");
+			}
+			conn.setAutoCommit(false);
+			try (PreparedStatement insert = conn.prepareStatement(
+					"INSERT INTO PassengerNumbers (rowid, Date, FlightNumber, Passengers) VALUES (?, ?, ?, ?)")) {
+				for (long runStart : runStarts) {
+					for (int i = 0; i < 3000; i++) {
+						long rowid = runStart + i;
+						insert.setLong(1, rowid);
+						insert.setString(2, FIRST_DAY.plusDays(Math.floorMod(rowid, 40)).toString());
+						insert.setInt(3, (int) Math.floorMod(rowid, 97));
+						insert.setInt(4, (int) Math.floorMod(rowid, 301));
+						insert.addBatch();
+					}
+				}
+				insert.executeBatch();
+			}
+			conn.commit();
+		}
+
+		PassengerNumbersDAO oneQuery = new PassengerNumbersDAO();
+		oneQuery.setLoadParallelism(1);
+		oneQuery.loadPassengerNumbersData(db);
+
+		boolean metrics = Metrics.isEnabled();
+		Metrics.setEnabled(true);
+		long shardsBefore = Metrics.counter("passengers.load.shards").get();
+		PassengerNumbersDAO sharded = new PassengerNumbersDAO();
+		sharded.setLoadParallelism(4);
+		sharded.setShardRows(1000);
+		try {
+			sharded.loadPassengerNumbersData(db);
+		}
+		finally {
+			Metrics.setEnabled(metrics);
+		}
+		//15000 rows in shards of at least 1000, but no more than four for each of the four threads
+		Assert.assertEquals(15, Metrics.counter("passengers.load.shards").get() - shardsBefore);
+
+		Assert.assertEquals(40 * 97, oneQuery.getNumberOfEntries());
+		Assert.assertEquals(oneQuery.getNumberOfEntries(), sharded.getNumberOfEntries());
+		for (int day = 0; day < 40; day++) {
+			LocalDate date = FIRST_DAY.plusDays(day);
+			for (int flight = 0; flight < 97; flight++) {
+				Assert.assertEquals(oneQuery.getPassengerNumbersFor(flight, date), sharded.getPassengerNumbersFor(flight, date));
+			}
+		}
+		//the last run wins wherever runs share a flight and date
+		long lastRowid = Long.MAX_VALUE;
+		Assert.assertEquals(Math.floorMod(lastRowid, 301), oneQuery.getPassengerNumbersFor((int) Math.floorMod(lastRowid, 97),
+				FIRST_DAY.plusDays(Math.floorMod(lastRowid, 40))));
+	}
+
+	@Test
+	public void lazyWindowsAreAddedWithoutCopyingTheCache() throws Exception {
+		List<Path> files = TestDatasets.write(folder.newFolder("data").toPath(), 8);
+		TestDatasets.Loaded loaded = new TestDatasets.Loaded(files);
+		for (boolean offHeap : new boolean[] {false, true}) {
+			PassengerNumbersDAO lazy = new PassengerNumbersDAO(offHeap);
+			lazy.setLazyLoading(files.get(3), 2);
+			PassengerForecastStore store = lazy.getStore();
+			long version = lazy.getDataVersion();
+			for (Route route : loaded.routes.getAllRoutes()) {
+				for (int day = -1; day <= TestDatasets.DAYS; day++) {
+					LocalDate date = TestDatasets.FIRST_DAY.plusDays(day);
+					Assert.assertEquals(loaded.passengerNumbers.getPassengerNumbersFor(route.getFlightNumber(), date),
+							lazy.getPassengerNumbersFor(route.getFlightNumber(), date));
+				}
+			}
+			Assert.assertSame(store, lazy.getStore());
+			Assert.assertTrue(lazy.getDataVersion() > version);
+			Assert.assertEquals(loaded.passengerNumbers.getNumberOfEntries(), lazy.getNumberOfEntries());
+		}
+	}
+}
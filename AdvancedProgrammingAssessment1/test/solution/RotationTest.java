@@ -0,0 +1,107 @@
+package solution;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the binary searches in FeasibilityIndex.Rotation against a scan of every flight
+ */
+public class RotationTest {
+	private static final int START = 100;
+
+	/**
+	 * One booked flight, in minutes
+	 */
+	private static class Flight {
+		final long departure;
+		final long landing;
+		final int arrival;
+
+		Flight(long departure, long landing, int arrival) {
+			this.departure = departure;
+			this.landing = landing;
+			this.arrival = arrival;
+		}
+	}
+
+	@Test
+	public void emptyRotationIsFreeAndAtTheStart() {
+		FeasibilityIndex.Rotation rotation = new FeasibilityIndex.Rotation();
+		Assert.assertTrue(rotation.isFree(0, 60));
+		Assert.assertEquals(START, rotation.positionAt(30, START));
+	}
+
+	@Test
+	public void matchesAScanOfEveryFlight() {
+		Random random = new Random(22);
+		for (int round = 0; round < 200; round++) {
+			List<Flight> flights = flights(random, random.nextInt(40));
+			FeasibilityIndex.Rotation rotation = new FeasibilityIndex.Rotation();
+			//mostly in departure order, as the scheduler books them, but not always
+			List<Flight> booking = new ArrayList<Flight>(flights);
+			if (random.nextBoolean()) {
+				Collections.shuffle(booking, random);
+			}
+			for (Flight f : booking) {
+				rotation.add(f.departure, f.landing, f.arrival);
+			}
+
+			long end = flights.isEmpty() ? 100 : flights.get(flights.size() - 1).landing + 100;
+			for (long minute = -10; minute <= end; minute++) {
+				Assert.assertEquals("position at " + minute, positionAt(flights, minute), rotation.positionAt(minute, START));
+			}
+			for (int query = 0; query < 500; query++) {
+				long departure = random.nextInt((int) end + 20) - 10;
+				long landing = departure + 1 + random.nextInt(200);
+				Assert.assertEquals("free " + departure + " to " + landing, isFree(flights, departure, landing),
+						rotation.isFree(departure, landing));
+			}
+			for (Flight f : flights) {
+				Assert.assertFalse(rotation.isFree(f.departure, f.landing));
+				Assert.assertEquals(isFree(flights, f.landing, f.landing + 1), rotation.isFree(f.landing, f.landing + 1));
+			}
+		}
+	}
+
+	/**
+	 * Flights that do not overlap, in departure order, some landing as the next departs
+	 */
+	private static List<Flight> flights(Random random, int count) {
+		List<Flight> flights = new ArrayList<Flight>();
+		long time = random.nextInt(50);
+		for (int i = 0; i < count; i++) {
+			long departure = time + (random.nextInt(3) == 0 ? 0 : random.nextInt(120));
+			long landing = departure + 1 + random.nextInt(300);
+			flights.add(new Flight(departure, landing, random.nextInt(8)));
+			time = landing;
+		}
+		return flights;
+	}
+
+	private static boolean isFree(List<Flight> flights, long departure, long landing) {
+		for (Flight f : flights) {
+			if (f.departure < landing && departure < f.landing) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int positionAt(List<Flight> flights, long minute) {
+		int position = START;
+		for (Flight f : flights) {
+			if (f.departure < minute && minute < f.landing) {
+				return CodeDictionary.NONE;
+			}
+			if (f.landing <= minute) {
+				position = f.arrival;
+			}
+		}
+		return position;
+	}
+}
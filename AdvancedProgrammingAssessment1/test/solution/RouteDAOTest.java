@@ -0,0 +1,62 @@
+package solution;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import baseclasses.Route;
+
+public class RouteDAOTest {
+	private static final LocalDate TUESDAY = LocalDate.of(2020, 7, 7);
+
+	@Test
+	public void daysOfWeekMatchExactly() {
+		RouteDAO routes = new RouteDAO();
+		List<Route> loaded = new ArrayList<Route>();
+		loaded.add(route(1, "Tue", "MAN"));
+		loaded.add(route(2, "tue", "MAN"));
+		loaded.add(route(3, "Tuesday", "LHR"));
+		routes.restore(loaded);
+
+		Assert.assertEquals(1, routes.findRoutesByDayOfWeek("Tue").get(0).getFlightNumber());
+		Assert.assertEquals(1, routes.findRoutesByDayOfWeek("Tue").size());
+		Assert.assertEquals(2, routes.findRoutesByDayOfWeek("tue").get(0).getFlightNumber());
+		Assert.assertEquals(3, routes.findRoutesByDayOfWeek("Tuesday").get(0).getFlightNumber());
+		Assert.assertTrue(routes.findRoutesByDayOfWeek("TUE").isEmpty());
+		Assert.assertTrue(routes.findRoutesByDayOfWeek("Tuexyz").isEmpty());
+		Assert.assertTrue(routes.findRoutesByDayOfWeek(null).isEmpty());
+		Assert.assertEquals(1, routes.findRoutesByDepartureAirportAndDay("MAN", "Tue").size());
+		Assert.assertTrue(routes.findRoutesByDepartureAirportAndDay("man", "Tue").isEmpty());
+		Assert.assertTrue(routes.findRoutesByDepartureAirportAndDay("LHR", "Tue").isEmpty());
+	}
+
+	@Test
+	public void datesMatchTheDayNameExactly() {
+		String tuesday = DateTimeFormatter.ofPattern("E").format(TUESDAY);
+		RouteDAO routes = new RouteDAO();
+		List<Route> loaded = new ArrayList<Route>();
+		loaded.add(route(1, tuesday, "MAN"));
+		loaded.add(route(2, tuesday.toUpperCase(), "MAN"));
+		routes.restore(loaded);
+
+		Assert.assertEquals(1, routes.findRoutesbyDate(TUESDAY).size());
+		Assert.assertEquals(1, routes.findRoutesbyDate(TUESDAY).get(0).getFlightNumber());
+		Assert.assertTrue(routes.findRoutesbyDate(TUESDAY.plusDays(1)).isEmpty());
+		Assert.assertEquals(DayOfWeek.TUESDAY, RouteDAO.parseDayOfWeek(tuesday));
+		Assert.assertNull(RouteDAO.parseDayOfWeek(tuesday.toUpperCase()));
+	}
+
+	private static Route route(int flightNumber, String dayOfWeek, String departureAirportCode) {
+		Route route = new Route();
+		route.setFlightNumber(flightNumber);
+		route.setDayOfWeek(dayOfWeek);
+		route.setDepartureAirportCode(departureAirportCode);
+		route.setArrivalAirportCode("CDG");
+		return route;
+	}
+}
@@ -0,0 +1,57 @@
+package solution;
+
+import java.time.LocalDate;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import baseclasses.Schedule;
+
+public class SchedulerPoolTest {
+	private static final LocalDate END = TestDatasets.FIRST_DAY.plusDays(6);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void schedulesShareTheInjectedPoolAndLeaveItRunning() throws Exception {
+		TestDatasets.Loaded loaded = new TestDatasets.Loaded(TestDatasets.write(folder.getRoot().toPath(), 5));
+		AtomicInteger threads = new AtomicInteger();
+		ForkJoinPool pool = new ForkJoinPool(2, p -> {
+			threads.incrementAndGet();
+			return ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+		}, null, false);
+		try {
+			Scheduler scheduler = new Scheduler(0, pool);
+			Schedule first = scheduler.generateSchedule(loaded.aircraft, loaded.crew, loaded.routes,
+					loaded.passengerNumbers, TestDatasets.FIRST_DAY, END);
+			Schedule second = scheduler.generateSchedule(loaded.aircraft, loaded.crew, loaded.routes,
+					loaded.passengerNumbers, TestDatasets.FIRST_DAY, END);
+
+			Assert.assertFalse(pool.isShutdown());
+			Assert.assertTrue(threads.get() > 0 && threads.get() <= 2);
+			Assert.assertEquals(remaining(first), remaining(second));
+			Schedule shared = new Scheduler().generateSchedule(loaded.aircraft, loaded.crew, loaded.routes,
+					loaded.passengerNumbers, TestDatasets.FIRST_DAY, END);
+			Assert.assertEquals(remaining(first), remaining(shared));
+			Assert.assertTrue(pool.awaitQuiescence(10, TimeUnit.SECONDS));
+		}
+		finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsANullPool() {
+		new Scheduler(0, null);
+	}
+
+	private static int remaining(Schedule schedule) {
+		return schedule.getRemainingAllocations().size();
+	}
+}
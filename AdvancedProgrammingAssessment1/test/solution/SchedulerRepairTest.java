@@ -0,0 +1,181 @@
+package solution;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import baseclasses.Aircraft;
+import baseclasses.CabinCrew;
+import baseclasses.Crew;
+import baseclasses.FlightInfo;
+import baseclasses.Schedule;
+
+public class SchedulerRepairTest {
+	private static final LocalDate END = TestDatasets.FIRST_DAY.plusDays(6);
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private TestDatasets.Loaded loaded;
+	private Scheduler scheduler;
+	private Schedule schedule;
+	private List<FlightInfo> flights;
+	//the flights the last repairCounting() kept as they were, and those it planned again
+	private long replayedFlights;
+	private long replannedFlights;
+
+	@Before
+	public void generate() throws Exception {
+		loaded = new TestDatasets.Loaded(TestDatasets.write(folder.getRoot().toPath(), 3));
+		scheduler = new Scheduler();
+		schedule = scheduler.generateSchedule(loaded.aircraft, loaded.crew, loaded.routes, loaded.passengerNumbers,
+				TestDatasets.FIRST_DAY, END);
+		flights = new Schedule(loaded.routes, TestDatasets.FIRST_DAY, END).getRemainingAllocations();
+	}
+
+	/**
+	 * Two cabin crew with the same name and home base, both working in the schedule
+	 */
+	private List<CabinCrew> namesakes() {
+		Map<String, CabinCrew> seen = new HashMap<String, CabinCrew>();
+		for (CabinCrew cc : loaded.crew.getAllCabinCrew()) {
+			if (busy(schedule, cc).isEmpty()) {
+				continue;
+			}
+			CabinCrew namesake = seen.put(RecordKeys.crewKey(cc), cc);
+			if (namesake != null) {
+				List<CabinCrew> pair = new ArrayList<CabinCrew>();
+				pair.add(namesake);
+				pair.add(cc);
+				return pair;
+			}
+		}
+		throw new AssertionError("The data set has no working namesakes");
+	}
+
+	/**
+	 * The flights a crew member is busy for in a schedule
+	 */
+	private List<FlightInfo> busy(Schedule s, Crew crew) {
+		List<FlightInfo> busy = new ArrayList<FlightInfo>();
+		for (FlightInfo flight : flights) {
+			if (s.hasConflict(crew, flight)) {
+				busy.add(flight);
+			}
+		}
+		return busy;
+	}
+
+	@Test
+	public void unavailableCrewAreReplacedButNotTheirNamesakes() {
+		List<CabinCrew> namesakes = namesakes();
+		CabinCrew sick = namesakes.get(0);
+		CabinCrew namesake = namesakes.get(1);
+		List<Disruption> disruptions = new ArrayList<Disruption>();
+		disruptions.add(Disruption.crewUnavailable(sick, TestDatasets.FIRST_DAY, END));
+
+		Schedule repaired = scheduler.repairSchedule(schedule, disruptions, loaded.aircraft, loaded.crew,
+				loaded.routes, loaded.passengerNumbers);
+
+		Assert.assertEquals(0, busy(repaired, sick).size());
+		Assert.assertFalse(busy(repaired, namesake).isEmpty());
+		Assert.assertTrue(busy(repaired, namesake).containsAll(onlyWithout(namesake, sick)));
+		Assert.assertEquals(schedule.getRemainingAllocations().size(), repaired.getRemainingAllocations().size());
+	}
+
+	/**
+	 * The flights a crew member is busy for that another was not busy for at all in the schedule
+	 */
+	private List<FlightInfo> onlyWithout(Crew crew, Crew other) {
+		List<FlightInfo> without = busy(schedule, crew);
+		without.removeAll(busy(schedule, other));
+		return without;
+	}
+
+	@Test
+	public void repairWithoutDisruptionsReplaysEveryFlight() {
+		repairCounting(new ArrayList<Disruption>());
+		Assert.assertEquals(flights.size(), replayedFlights);
+		Assert.assertEquals(0, replannedFlights);
+	}
+
+	@Test
+	public void repairOnlyPlansAgainWhatADisruptionTouches() {
+		Aircraft grounded = busiestAircraft();
+		LocalDate from = TestDatasets.FIRST_DAY.plusDays(3);
+		List<FlightInfo> lost = new ArrayList<FlightInfo>();
+		int landingFrom = 0;
+		for (FlightInfo flight : flights) {
+			if (!flight.getLandingDateTime().toLocalDate().isBefore(from)) {
+				landingFrom++;
+				if (schedule.hasConflict(grounded, flight)) {
+					lost.add(flight);
+				}
+			}
+		}
+		List<Disruption> disruptions = new ArrayList<Disruption>();
+		disruptions.add(Disruption.aircraftGrounded(grounded.getTailCode(), from, END));
+
+		Schedule repaired = repairCounting(disruptions);
+
+		Assert.assertFalse(lost.isEmpty());
+		Assert.assertEquals(flights.size(), replayedFlights + replannedFlights);
+		Assert.assertTrue(replannedFlights > 0);
+		//nothing before the grounding is planned again, and after it only the grounded aircraft's
+		//flights and those its replacements are taken from
+		Assert.assertTrue(replannedFlights + " planned again", replannedFlights <= Math.min(landingFrom, 2 * lost.size()));
+		for (FlightInfo flight : flights) {
+			if (!flight.getLandingDateTime().toLocalDate().isBefore(from)) {
+				Assert.assertFalse(repaired.hasConflict(grounded, flight));
+			}
+		}
+	}
+
+	/**
+	 * Repairs the schedule, counting the flights kept as they were and those planned again
+	 */
+	private Schedule repairCounting(List<Disruption> disruptions) {
+		boolean metrics = Metrics.isEnabled();
+		Metrics.setEnabled(true);
+		Metrics.Counter replayed = Metrics.counter("scheduler.repair.replayed");
+		Metrics.Counter replanned = Metrics.counter("scheduler.repair.replanned");
+		long replayedBefore = replayed.get();
+		long replannedBefore = replanned.get();
+		try {
+			return scheduler.repairSchedule(schedule, disruptions, loaded.aircraft, loaded.crew, loaded.routes,
+					loaded.passengerNumbers);
+		}
+		finally {
+			Metrics.setEnabled(metrics);
+			replayedFlights = replayed.get() - replayedBefore;
+			replannedFlights = replanned.get() - replannedBefore;
+		}
+	}
+
+	private Aircraft busiestAircraft() {
+		Aircraft busiest = null;
+		int most = 0;
+		for (Aircraft a : loaded.aircraft.getAllAircraft()) {
+			int flown = 0;
+			for (FlightInfo flight : flights) {
+				if (schedule.hasConflict(a, flight)) {
+					flown++;
+				}
+			}
+			if (flown > most) {
+				busiest = a;
+				most = flown;
+			}
+		}
+		return busiest;
+	}
+
+}
@@ -0,0 +1,70 @@
+package solution;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+import baseclasses.DataLoadingException;
+
+/**
+ * Small generated data sets for the tests, quick to write and load
+ */
+final class TestDatasets {
+	static final LocalDate FIRST_DAY = LocalDate.of(2020, 7, 1);
+	static final int DAYS = 14;
+
+	private TestDatasets() {
+	}
+
+	/**
+	 * A generator for a few airports, aircraft, crew and routes with two weeks of forecasts
+	 */
+	static DatasetGenerator small(long seed) {
+		DatasetGenerator generator = new DatasetGenerator();
+		generator.setSeed(seed);
+		generator.setAirports(4);
+		generator.setAircraft(16);
+		generator.setPilotsPerBase(8);
+		generator.setCabinCrewPerBase(16);
+		generator.setRoutes(28);
+		generator.setFirstForecastDay(FIRST_DAY);
+		generator.setForecastDays(DAYS);
+		return generator;
+	}
+
+	/**
+	 * Writes a small data set into a directory
+	 * @return the aircraft, crew, route and passenger numbers files, in that order
+	 */
+	static List<Path> write(Path directory, long seed) throws IOException, SQLException {
+		small(seed).generate(directory);
+		return files(directory);
+	}
+
+	static List<Path> files(Path directory) {
+		return Arrays.asList(directory.resolve("aircraft.csv"), directory.resolve("crew.json"),
+				directory.resolve("routes.xml"), directory.resolve("passengernumbers.db"));
+	}
+
+	/**
+	 * DAOs loaded from the files returned by write()
+	 */
+	static class Loaded {
+		final AircraftDAO aircraft = new AircraftDAO();
+		final CrewDAO crew = new CrewDAO();
+		final RouteDAO routes = new RouteDAO();
+		final PassengerNumbersDAO passengerNumbers = new PassengerNumbersDAO();
+
+		Loaded() {
+		}
+
+		Loaded(List<Path> files) throws DataLoadingException {
+			aircraft.loadAircraftData(files.get(0));
+			crew.loadCrewData(files.get(1));
+			routes.loadRouteData(files.get(2));
+			passengerNumbers.loadPassengerNumbersData(files.get(3));
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package solution.benchmarks;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+import solution.DatasetGenerator;
+
+/**
+ * A synthetic data set sized by a fleet scale factor, written by DatasetGenerator
+ * At 1x there are 10 airports, 40 aircraft, 120 pilots, 240 cabin crew, 280 weekly routes
+ * and 90 days of forecasts; every count except the airports and days grows with the scale
+ */
+public class BenchmarkData {
+	final DatasetGenerator generator = new DatasetGenerator();
+	final Path directory;
+	final Path aircraft;
+	final Path crew;
+	final Path routes;
+	final Path passengerNumbers;
+
+	/**
+	 * Writes every file into a new temporary directory
+	 * @param scale the fleet scale factor, 1 for the base size
+	 */
+	BenchmarkData(int scale) throws IOException, SQLException {
+		generator.setSeed(scale);
+		generator.setAirports(10);
+		generator.setAircraft(40 * scale);
+		generator.setPilotsPerBase(12 * scale);
+		generator.setCabinCrewPerBase(24 * scale);
+		generator.setRoutes(280 * scale);
+		generator.setForecastDays(90);
+		directory = Files.createTempDirectory("flightscheduler-bench-" + scale + "x");
+		generator.generate(directory);
+		aircraft = directory.resolve("aircraft.csv");
+		crew = directory.resolve("crew.json");
+		routes = directory.resolve("routes.xml");
+		passengerNumbers = directory.resolve("passengernumbers.db");
+	}
+}
@@ -0,0 +1,28 @@
+package solution.benchmarks;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the load, query and repair benchmarks with the GC profiler attached, so every result has
+ * throughput or average time, latency percentiles and the allocation rate per operation
+ * Results are also written to target/jmh-result.json
+ *
+ * From the project root: mvn -B -Pbenchmark package
+ * Add -Dbenchmark.include=QueryBenchmark.findRoutesbyDate (a regular expression) to run fewer
+ */
+public class BenchmarkMain {
+
+	public static void main(String[] args) throws RunnerException {
+		Options options = new OptionsBuilder()
+				.include(args.length > 0 ? args[0] : ".*")
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result("target/jmh-result.json")
+				.build();
+		new Runner(options).run();
+	}
+}
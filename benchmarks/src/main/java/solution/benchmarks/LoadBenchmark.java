@@ -0,0 +1,70 @@
+package solution.benchmarks;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import baseclasses.DataLoadingException;
+import solution.AircraftDAO;
+import solution.CrewDAO;
+import solution.PassengerNumbersDAO;
+import solution.RouteDAO;
+
+/**
+ * Measures a full load of each data source into a fresh DAO
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+	@Param({ "1", "10", "100" })
+	public int scale;
+
+	private BenchmarkData data;
+
+	@Setup
+	public void writeData() throws Exception {
+		data = new BenchmarkData(scale);
+	}
+
+	@Benchmark
+	public AircraftDAO loadAircraftData() throws DataLoadingException {
+		AircraftDAO dao = new AircraftDAO();
+		dao.loadAircraftData(data.aircraft);
+		return dao;
+	}
+
+	@Benchmark
+	public CrewDAO loadCrewData() throws DataLoadingException {
+		CrewDAO dao = new CrewDAO();
+		dao.loadCrewData(data.crew);
+		return dao;
+	}
+
+	@Benchmark
+	public RouteDAO loadRouteData() throws DataLoadingException {
+		RouteDAO dao = new RouteDAO();
+		dao.loadRouteData(data.routes);
+		return dao;
+	}
+
+	@Benchmark
+	public PassengerNumbersDAO loadPassengerNumbersData() throws DataLoadingException {
+		PassengerNumbersDAO dao = new PassengerNumbersDAO();
+		dao.loadPassengerNumbersData(data.passengerNumbers);
+		dao.close();
+		return dao;
+	}
+}
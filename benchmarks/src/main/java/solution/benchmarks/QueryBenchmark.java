@@ -0,0 +1,111 @@
+package solution.benchmarks;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import baseclasses.Aircraft;
+import baseclasses.Pilot;
+import baseclasses.Route;
+import solution.AircraftDAO;
+import solution.CrewDAO;
+import solution.DatasetGenerator;
+import solution.PassengerNumbersDAO;
+import solution.RouteDAO;
+
+/**
+ * Measures the finder methods the scheduler calls most, against loaded DAOs
+ * Each call takes the next argument from a pre-generated table so the JIT cannot fold them away
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+	private static final int ARGUMENTS = 1024;
+
+	@Param({ "1", "10", "100" })
+	public int scale;
+
+	private AircraftDAO aircraft;
+	private CrewDAO crew;
+	private RouteDAO routes;
+	private PassengerNumbersDAO passengerNumbers;
+
+	private final int[] seats = new int[ARGUMENTS];
+	private final String[] typeCodes = new String[ARGUMENTS];
+	private final String[] airportCodes = new String[ARGUMENTS];
+	private final LocalDate[] dates = new LocalDate[ARGUMENTS];
+	private final int[] flightNumbers = new int[ARGUMENTS];
+	private int next;
+
+	@Setup
+	public void load() throws Exception {
+		BenchmarkData data = new BenchmarkData(scale);
+		aircraft = new AircraftDAO();
+		aircraft.loadAircraftData(data.aircraft);
+		crew = new CrewDAO();
+		crew.loadCrewData(data.crew);
+		routes = new RouteDAO();
+		routes.loadRouteData(data.routes);
+		passengerNumbers = new PassengerNumbersDAO();
+		passengerNumbers.loadPassengerNumbersData(data.passengerNumbers);
+
+		Random random = new Random(42);
+		DatasetGenerator generator = data.generator;
+		for (int i = 0; i < ARGUMENTS; i++) {
+			seats[i] = 50 + random.nextInt(200);
+			typeCodes[i] = DatasetGenerator.TYPE_CODES[random.nextInt(DatasetGenerator.TYPE_CODES.length)];
+			airportCodes[i] = DatasetGenerator.airportCode(random.nextInt(generator.getAirports()));
+			dates[i] = generator.getFirstForecastDay().plusDays(random.nextInt(generator.getForecastDays()));
+			flightNumbers[i] = 1 + random.nextInt(generator.getRoutes());
+		}
+	}
+
+	@TearDown
+	public void close() {
+		passengerNumbers.close();
+	}
+
+	private int nextArgument() {
+		next = (next + 1) & (ARGUMENTS - 1);
+		return next;
+	}
+
+	@Benchmark
+	public List<Aircraft> findAircraftBySeats() {
+		return aircraft.findAircraftBySeats(seats[nextArgument()]);
+	}
+
+	@Benchmark
+	public List<Pilot> findPilotsByHomeBaseAndTypeRating() {
+		int i = nextArgument();
+		return crew.findPilotsByHomeBaseAndTypeRating(typeCodes[i], airportCodes[i]);
+	}
+
+	@Benchmark
+	public List<Route> findRoutesbyDate() {
+		return routes.findRoutesbyDate(dates[nextArgument()]);
+	}
+
+	@Benchmark
+	public int getPassengerNumbersFor() {
+		int i = nextArgument();
+		return passengerNumbers.getPassengerNumbersFor(flightNumbers[i], dates[i]);
+	}
+}
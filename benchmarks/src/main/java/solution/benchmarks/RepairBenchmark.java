@@ -0,0 +1,90 @@
+package solution.benchmarks;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import baseclasses.Schedule;
+import solution.AircraftDAO;
+import solution.CrewDAO;
+import solution.Disruption;
+import solution.PassengerNumbersDAO;
+import solution.RouteDAO;
+import solution.Scheduler;
+
+/**
+ * Measures repairing a two-week schedule after an aircraft is grounded and a pilot falls ill
+ * part way through, against generating the same schedule again in full
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RepairBenchmark {
+	private static final int DAYS = 14;
+
+	@Param({ "1", "10" })
+	public int scale;
+
+	private AircraftDAO aircraft;
+	private CrewDAO crew;
+	private RouteDAO routes;
+	private PassengerNumbersDAO passengerNumbers;
+	private Scheduler scheduler;
+	private LocalDate startDate;
+	private LocalDate endDate;
+	private Schedule schedule;
+	private final List<Disruption> disruptions = new ArrayList<Disruption>();
+
+	@Setup
+	public void generate() throws Exception {
+		BenchmarkData data = new BenchmarkData(scale);
+		aircraft = new AircraftDAO();
+		aircraft.loadAircraftData(data.aircraft);
+		crew = new CrewDAO();
+		crew.loadCrewData(data.crew);
+		routes = new RouteDAO();
+		routes.loadRouteData(data.routes);
+		passengerNumbers = new PassengerNumbersDAO();
+		passengerNumbers.loadPassengerNumbersData(data.passengerNumbers);
+
+		startDate = data.generator.getFirstForecastDay();
+		endDate = startDate.plusDays(DAYS - 1);
+		scheduler = new Scheduler();
+		schedule = scheduler.generateSchedule(aircraft, crew, routes, passengerNumbers, startDate, endDate);
+		disruptions.add(Disruption.aircraftGrounded(aircraft.getAllAircraft().get(0).getTailCode(),
+				startDate.plusDays(3), endDate));
+		disruptions.add(Disruption.crewUnavailable(crew.getAllPilots().get(0), startDate.plusDays(5),
+				startDate.plusDays(8)));
+	}
+
+	@TearDown
+	public void close() {
+		passengerNumbers.close();
+	}
+
+	@Benchmark
+	public Schedule repairSchedule() {
+		return scheduler.repairSchedule(schedule, disruptions, aircraft, crew, routes, passengerNumbers);
+	}
+
+	@Benchmark
+	public Schedule generateSchedule() {
+		return scheduler.generateSchedule(aircraft, crew, routes, passengerNumbers, startDate, endDate);
+	}
+}